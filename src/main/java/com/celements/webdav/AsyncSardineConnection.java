@@ -0,0 +1,87 @@
+package com.celements.webdav;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.celements.webdav.DavAsyncExecutor.AsyncRequest;
+import com.celements.webdav.WebDavService.AsyncWebDavConnection;
+import com.celements.webdav.WebDavService.WebDavConnection;
+import com.github.sardine.DavResource;
+
+/**
+ * {@link AsyncWebDavConnection} running the calls of a blocking {@link WebDavConnection} on the
+ * {@link DavAsyncExecutor}.
+ */
+class AsyncSardineConnection implements AsyncWebDavConnection {
+
+  private final WebDavConnection connection;
+  private final DavAsyncExecutor executor;
+  private final long timeoutMillis;
+
+  AsyncSardineConnection(WebDavConnection connection, DavAsyncExecutor executor,
+      long timeoutMillis) {
+    this.connection = checkNotNull(connection);
+    this.executor = checkNotNull(executor);
+    this.timeoutMillis = timeoutMillis;
+  }
+
+  @Override
+  public AsyncWebDavConnection withTimeout(long timeout, TimeUnit unit) {
+    return new AsyncSardineConnection(connection, executor, unit.toMillis(timeout));
+  }
+
+  @Override
+  public CompletableFuture<List<DavResource>> list(Path path) {
+    return submit(() -> connection.list(path));
+  }
+
+  @Override
+  public CompletableFuture<Optional<DavResource>> get(Path path) {
+    return submit(() -> connection.get(path));
+  }
+
+  @Override
+  public CompletableFuture<byte[]> load(Path filePath) {
+    return submit(() -> connection.load(filePath));
+  }
+
+  @Override
+  public CompletableFuture<Void> createDirectory(Path dirPath) {
+    return submit(() -> {
+      connection.createDirectory(dirPath);
+      return null;
+    });
+  }
+
+  @Override
+  public CompletableFuture<Void> createOrUpdate(Path filePath, byte[] content) {
+    return submit(() -> {
+      connection.createOrUpdate(filePath, content);
+      return null;
+    });
+  }
+
+  @Override
+  public CompletableFuture<Void> delete(Path path) {
+    return submit(() -> {
+      connection.delete(path);
+      return null;
+    });
+  }
+
+  private <T> CompletableFuture<T> submit(AsyncRequest<T> request) {
+    return executor.submit(request, timeoutMillis);
+  }
+
+  @Override
+  public void close() throws IOException {
+    connection.close();
+  }
+
+}
@@ -0,0 +1,84 @@
+package com.celements.webdav;
+
+import static com.google.common.base.Strings.*;
+
+import java.util.Optional;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+
+/**
+ * A single byte range of an HTTP Range request header resolved against the total content length,
+ * see <a href="https://tools.ietf.org/html/rfc7233">RFC 7233</a>. Multiple ranges aren't
+ * supported and result in the whole content being served.
+ */
+final class ByteRange {
+
+  private static final String UNIT_PREFIX = "bytes=";
+
+  private final long first;
+  private final long last;
+  private final long total;
+
+  private ByteRange(long first, long last, long total) {
+    this.first = first;
+    this.last = last;
+    this.total = total;
+  }
+
+  /**
+   * @return the byte range or empty if the header is missing, invalid or defines multiple ranges
+   */
+  @NotNull
+  static Optional<ByteRange> parse(@Nullable String header, long total) {
+    if (isNullOrEmpty(header) || !header.trim().startsWith(UNIT_PREFIX) || (total < 0)) {
+      return Optional.empty();
+    }
+    String spec = header.trim().substring(UNIT_PREFIX.length()).trim();
+    int dashIdx = spec.indexOf('-');
+    if ((dashIdx < 0) || (spec.indexOf(',') >= 0)) {
+      return Optional.empty();
+    }
+    try {
+      String firstStr = spec.substring(0, dashIdx).trim();
+      String lastStr = spec.substring(dashIdx + 1).trim();
+      if (firstStr.isEmpty()) { // suffix range, e.g. the last 500 bytes: '-500'
+        long suffix = Long.parseLong(lastStr);
+        return (suffix >= 0) ? Optional.of(new ByteRange(Math.max(0, total - suffix), total - 1,
+            total)) : Optional.empty();
+      }
+      long first = Long.parseLong(firstStr);
+      long last = lastStr.isEmpty() ? Long.MAX_VALUE : Long.parseLong(lastStr);
+      return ((first >= 0) && (last >= first))
+          ? Optional.of(new ByteRange(first, Math.min(last, total - 1), total))
+          : Optional.empty();
+    } catch (NumberFormatException exc) {
+      return Optional.empty();
+    }
+  }
+
+  boolean isSatisfiable() {
+    return (first < total) && (first <= last);
+  }
+
+  long getOffset() {
+    return first;
+  }
+
+  long getLength() {
+    return (last - first) + 1;
+  }
+
+  /**
+   * @return the value for the Content-Range response header
+   */
+  String getContentRange() {
+    return isSatisfiable() ? ("bytes " + first + "-" + last + "/" + total) : ("bytes */" + total);
+  }
+
+  @Override
+  public String toString() {
+    return "ByteRange [" + getContentRange() + "]";
+  }
+
+}
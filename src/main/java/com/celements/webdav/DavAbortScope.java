@@ -0,0 +1,51 @@
+package com.celements.webdav;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.validation.constraints.NotNull;
+
+import org.apache.http.client.methods.AbstractExecutionAwareRequest;
+
+/**
+ * Tracks the HTTP requests executed by a call running in this scope, so that aborting the scope
+ * aborts them. Unlike interrupting the thread, aborting a request shuts down its connection and
+ * thus also unblocks a pending socket read. Requests started after the abort are aborted
+ * immediately.
+ */
+class DavAbortScope {
+
+  private static final ThreadLocal<DavAbortScope> CURRENT = new ThreadLocal<>();
+
+  private final Set<AbstractExecutionAwareRequest> requests = ConcurrentHashMap.newKeySet();
+  private volatile boolean aborted = false;
+
+  /**
+   * registers the request with the scope of the current thread, if any
+   */
+  static void track(@NotNull AbstractExecutionAwareRequest request) {
+    DavAbortScope scope = CURRENT.get();
+    if (scope != null) {
+      scope.requests.add(request);
+      if (scope.aborted) {
+        request.abort();
+      }
+    }
+  }
+
+  <T> T execute(@NotNull DavAsyncExecutor.AsyncRequest<T> request) throws Exception {
+    CURRENT.set(this);
+    try {
+      return request.execute();
+    } finally {
+      CURRENT.remove();
+      requests.clear();
+    }
+  }
+
+  void abort() {
+    aborted = true;
+    requests.forEach(AbstractExecutionAwareRequest::abort);
+  }
+
+}
@@ -0,0 +1,102 @@
+package com.celements.webdav;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.validation.constraints.NotNull;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Node-wide bounded executor completing {@link CompletableFuture}s of asynchronous WebDAV calls.
+ * A call exceeding its timeout is completed with a {@link TimeoutException}. A timed out or
+ * cancelled call aborts its HTTP requests, which releases their connections even while blocked
+ * on a socket read, and interrupts the worker thread still running it.
+ */
+class DavAsyncExecutor {
+
+  static final String CFG_PREFIX = "webdav.async.";
+  static final String CFG_THREADS = CFG_PREFIX + "threads";
+  static final String CFG_QUEUE_SIZE = CFG_PREFIX + "queueSize";
+  static final String CFG_TIMEOUT = CFG_PREFIX + "timeoutSec";
+
+  static final int DEFAULT_THREADS = 16;
+  static final int DEFAULT_QUEUE_SIZE = 1000;
+  static final int DEFAULT_TIMEOUT = 60;
+
+  private final ThreadPoolExecutor executor;
+  private final ScheduledThreadPoolExecutor scheduler;
+  private final long defaultTimeoutMillis;
+
+  DavAsyncExecutor(int threads, int queueSize, int defaultTimeoutSec) {
+    executor = new ThreadPoolExecutor(Math.max(threads, 1), Math.max(threads, 1), 60,
+        TimeUnit.SECONDS, new LinkedBlockingQueue<>(Math.max(queueSize, 1)),
+        new ThreadFactoryBuilder().setNameFormat("webdav-async-%d").setDaemon(true).build());
+    executor.allowCoreThreadTimeOut(true);
+    scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder()
+        .setNameFormat("webdav-async-timeout-%d").setDaemon(true).build());
+    scheduler.setRemoveOnCancelPolicy(true);
+    defaultTimeoutMillis = TimeUnit.SECONDS.toMillis(Math.max(defaultTimeoutSec, 0));
+  }
+
+  long getDefaultTimeoutMillis() {
+    return defaultTimeoutMillis;
+  }
+
+  /**
+   * @param timeoutMillis
+   *          the maximum duration of the call, 0 for no timeout
+   * @return a future completed exceptionally with a {@link RejectedExecutionException} if the
+   *         queue is full
+   */
+  @NotNull
+  <T> CompletableFuture<T> submit(@NotNull AsyncRequest<T> request, long timeoutMillis) {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    DavAbortScope scope = new DavAbortScope();
+    try {
+      Future<?> task = executor.submit(() -> {
+        try {
+          future.complete(scope.execute(request));
+        } catch (Exception exc) {
+          future.completeExceptionally(exc);
+        }
+      });
+      if (timeoutMillis > 0) {
+        ScheduledFuture<?> timeout = scheduler.schedule(() -> future.completeExceptionally(
+            new TimeoutException("no response within " + timeoutMillis + "ms")), timeoutMillis,
+            TimeUnit.MILLISECONDS);
+        future.whenComplete((result, exc) -> timeout.cancel(false));
+      }
+      future.whenComplete((result, exc) -> {
+        if ((exc instanceof CancellationException) || (exc instanceof TimeoutException)) {
+          scope.abort();
+          task.cancel(true);
+        }
+      });
+    } catch (RejectedExecutionException exc) {
+      future.completeExceptionally(exc);
+    }
+    return future;
+  }
+
+  void shutdown() {
+    scheduler.shutdownNow();
+    executor.shutdownNow();
+  }
+
+  @FunctionalInterface
+  interface AsyncRequest<T> {
+
+    T execute() throws Exception;
+
+  }
+
+}
@@ -0,0 +1,75 @@
+package com.celements.webdav;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Per-item report of a batch operation. A failing item doesn't abort the batch, instead its error
+ * is collected alongside the results of the succeeded items.
+ */
+public class DavBatchResult<T> {
+
+  private final Map<Path, T> results = new LinkedHashMap<>();
+  private final Map<Path, Exception> errors = new LinkedHashMap<>();
+
+  public void addResult(@NotNull Path path, @Nullable T result) {
+    results.put(checkNotNull(path), result);
+  }
+
+  public void addError(@NotNull Path path, @NotNull Exception error) {
+    errors.put(checkNotNull(path), checkNotNull(error));
+  }
+
+  /**
+   * adds the results and errors of the other batch, e.g. of a further window of items
+   */
+  public void addAll(@NotNull DavBatchResult<T> other) {
+    results.putAll(other.results);
+    errors.putAll(other.errors);
+  }
+
+  @NotNull
+  public Set<Path> getSucceeded() {
+    return Collections.unmodifiableSet(results.keySet());
+  }
+
+  /**
+   * @return the results of the succeeded items, values are null for operations without result
+   */
+  @NotNull
+  public Map<Path, T> getResults() {
+    return Collections.unmodifiableMap(results);
+  }
+
+  @NotNull
+  public Map<Path, Exception> getErrors() {
+    return Collections.unmodifiableMap(errors);
+  }
+
+  public boolean hasErrors() {
+    return !errors.isEmpty();
+  }
+
+  @NotNull
+  public <R> DavBatchResult<R> transform(@NotNull Function<T, R> func) {
+    DavBatchResult<R> ret = new DavBatchResult<>();
+    results.forEach((path, result) -> ret.addResult(path, func.apply(result)));
+    ret.errors.putAll(errors);
+    return ret;
+  }
+
+  @Override
+  public String toString() {
+    return "DavBatchResult [succeeded=" + results.keySet() + ", errors=" + errors.keySet() + "]";
+  }
+
+}
@@ -0,0 +1,65 @@
+package com.celements.webdav;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Node-wide store of listing snapshots (href to ETag) for servers without sync-collection
+ * support. The changes are then computed by diffing the current listing against the snapshot
+ * referenced by a local sync token.
+ */
+class DavChangeSnapshots {
+
+  static final String CFG_PREFIX = "webdav.changes.";
+  static final String CFG_MAX_SNAPSHOTS = CFG_PREFIX + "maxSnapshots";
+  static final String CFG_TTL = CFG_PREFIX + "snapshotTtlSec";
+
+  static final int DEFAULT_MAX_SNAPSHOTS = 1000;
+  static final int DEFAULT_TTL = 60 * 60;
+
+  static final String TOKEN_PREFIX = "local:";
+
+  private final Cache<String, Map<String, String>> snapshots;
+
+  DavChangeSnapshots(int maxSnapshots, int ttlSec) {
+    snapshots = CacheBuilder.newBuilder()
+        .maximumSize(Math.max(maxSnapshots, 0))
+        .expireAfterAccess(Math.max(ttlSec, 0), TimeUnit.SECONDS)
+        .build();
+  }
+
+  static boolean isLocalToken(@Nullable String syncToken) {
+    return (syncToken != null) && syncToken.startsWith(TOKEN_PREFIX);
+  }
+
+  /**
+   * @return null if the token is unknown or expired
+   */
+  @Nullable
+  Map<String, String> get(@Nullable String syncToken) {
+    return isLocalToken(syncToken) ? snapshots.getIfPresent(syncToken) : null;
+  }
+
+  /**
+   * @return the token referencing the stored snapshot
+   */
+  @NotNull
+  String put(@NotNull Map<String, String> snapshot) {
+    String syncToken = TOKEN_PREFIX + UUID.randomUUID();
+    snapshots.put(syncToken, ImmutableMap.copyOf(snapshot));
+    return syncToken;
+  }
+
+  void invalidateAll() {
+    snapshots.invalidateAll();
+  }
+
+}
@@ -0,0 +1,70 @@
+package com.celements.webdav;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.List;
+
+import javax.validation.constraints.NotNull;
+
+import com.github.sardine.DavResource;
+
+/**
+ * Members of a collection changed since a sync token, see
+ * {@link WebDavService.WebDavConnection#getChanges}.
+ */
+public class DavChanges {
+
+  private final String syncToken;
+  private final List<DavResource> changed;
+  private final List<URI> removed;
+  private final boolean reset;
+
+  DavChanges(@NotNull String syncToken, @NotNull List<DavResource> changed,
+      @NotNull List<URI> removed, boolean reset) {
+    this.syncToken = checkNotNull(syncToken);
+    this.changed = Collections.unmodifiableList(changed);
+    this.removed = Collections.unmodifiableList(removed);
+    this.reset = reset;
+  }
+
+  /**
+   * @return the token to request the next changes with
+   */
+  @NotNull
+  public String getSyncToken() {
+    return syncToken;
+  }
+
+  /**
+   * @return the added and modified members
+   */
+  @NotNull
+  public List<DavResource> getChanged() {
+    return changed;
+  }
+
+  /**
+   * @return the hrefs of the removed members
+   */
+  @NotNull
+  public List<URI> getRemoved() {
+    return removed;
+  }
+
+  /**
+   * @return true if the given token was invalid or expired, in which case all current members
+   *         are reported as changed and removals can't be detected
+   */
+  public boolean isReset() {
+    return reset;
+  }
+
+  @Override
+  public String toString() {
+    return "DavChanges [changed=" + changed.size() + ", removed=" + removed.size() + ", reset="
+        + reset + "]";
+  }
+
+}
@@ -0,0 +1,148 @@
+package com.celements.webdav;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.validation.constraints.NotNull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.celements.webdav.exception.DavCircuitOpenException;
+
+/**
+ * Node-wide circuit breaker per remote host. After the configured number of consecutive failures
+ * the circuit opens and requests fail fast. Once the open duration elapsed, a single probe
+ * request is let through (half-open): its success closes the circuit, its failure opens it
+ * again.
+ */
+class DavCircuitBreaker {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(DavCircuitBreaker.class);
+
+  static final String CFG_PREFIX = "webdav.circuit.";
+  static final String CFG_FAILURE_THRESHOLD = CFG_PREFIX + "failureThreshold";
+  static final String CFG_OPEN = CFG_PREFIX + "openSec";
+
+  static final int DEFAULT_FAILURE_THRESHOLD = 5;
+  static final int DEFAULT_OPEN = 30;
+
+  enum State {
+    CLOSED, OPEN, HALF_OPEN
+  }
+
+  private final int failureThreshold;
+  private final long openMillis;
+  private final ConcurrentMap<String, Circuit> circuits = new ConcurrentHashMap<>();
+
+  DavCircuitBreaker(int failureThreshold, int openSec) {
+    this.failureThreshold = Math.max(failureThreshold, 1);
+    this.openMillis = TimeUnit.SECONDS.toMillis(Math.max(openSec, 0));
+  }
+
+  /**
+   * @return true if requests to the host currently fail fast
+   */
+  boolean isOpen(@NotNull String host) {
+    Circuit circuit = circuits.get(host);
+    return (circuit != null) && circuit.isOpen(System.currentTimeMillis());
+  }
+
+  /**
+   * @throws DavCircuitOpenException
+   *           if the circuit is open or a half-open probe is already in flight
+   */
+  void acquire(@NotNull String host) throws DavCircuitOpenException {
+    if (!getCircuit(host).tryAcquire(System.currentTimeMillis())) {
+      throw new DavCircuitOpenException(host);
+    }
+  }
+
+  void recordSuccess(@NotNull String host) {
+    getCircuit(host).onSuccess();
+  }
+
+  void recordFailure(@NotNull String host) {
+    getCircuit(host).onFailure(System.currentTimeMillis());
+  }
+
+  /**
+   * records an outcome telling nothing about the health of the host, e.g. a local failure. A
+   * half-open probe with such an outcome lets the next request probe again.
+   */
+  void recordInconclusive(@NotNull String host) {
+    getCircuit(host).onInconclusive();
+  }
+
+  @NotNull
+  State getState(@NotNull String host) {
+    return getCircuit(host).getState();
+  }
+
+  private Circuit getCircuit(String host) {
+    return circuits.computeIfAbsent(host, Circuit::new);
+  }
+
+  private class Circuit {
+
+    private final String host;
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedAt;
+
+    Circuit(String host) {
+      this.host = host;
+    }
+
+    synchronized State getState() {
+      return state;
+    }
+
+    synchronized boolean isOpen(long now) {
+      return (state == State.OPEN) && ((now - openedAt) < openMillis);
+    }
+
+    synchronized boolean tryAcquire(long now) {
+      switch (state) {
+        case CLOSED:
+          return true;
+        case OPEN:
+          if ((now - openedAt) >= openMillis) {
+            state = State.HALF_OPEN;
+            LOGGER.info("circuit half-open for [{}], probing", host);
+            return true;
+          }
+          return false;
+        default:
+          return false;
+      }
+    }
+
+    synchronized void onSuccess() {
+      if (state != State.CLOSED) {
+        LOGGER.info("circuit closed for [{}]", host);
+      }
+      state = State.CLOSED;
+      failures = 0;
+    }
+
+    synchronized void onInconclusive() {
+      if (state == State.HALF_OPEN) {
+        state = State.OPEN;
+      }
+    }
+
+    synchronized void onFailure(long now) {
+      failures++;
+      if ((state == State.HALF_OPEN) || ((state == State.CLOSED)
+          && (failures >= failureThreshold))) {
+        LOGGER.warn("circuit opened for [{}] after {} failures", host, failures);
+        state = State.OPEN;
+        openedAt = now;
+      }
+    }
+
+  }
+
+}
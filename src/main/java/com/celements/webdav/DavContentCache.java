@@ -0,0 +1,252 @@
+package com.celements.webdav;
+
+import static com.google.common.base.Preconditions.*;
+import static com.google.common.base.Strings.*;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.hash.Hashing;
+
+/**
+ * Node-wide LRU cache of loaded file contents together with their validators (ETag and
+ * Last-Modified), allowing to revalidate with a conditional GET instead of downloading unchanged
+ * files again. The memory tier is bounded by the total content size. If a disk directory is
+ * configured, entries evicted from memory are spilled to a disk tier, which is bounded as well.
+ * The files of the disk tier are re-indexed on startup, thus its bound holds across restarts.
+ */
+class DavContentCache {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(DavContentCache.class);
+
+  static final String CFG_PREFIX = "webdav.contentcache.";
+  static final String CFG_MAX_BYTES = CFG_PREFIX + "maxBytes";
+  static final String CFG_MAX_ENTRY_BYTES = CFG_PREFIX + "maxEntryBytes";
+  static final String CFG_DISK_DIR = CFG_PREFIX + "diskDir";
+  static final String CFG_DISK_MAX_BYTES = CFG_PREFIX + "diskMaxBytes";
+
+  static final long DEFAULT_MAX_BYTES = 16 * 1024 * 1024;
+  static final long DEFAULT_MAX_ENTRY_BYTES = 512 * 1024;
+  static final long DEFAULT_DISK_MAX_BYTES = 256 * 1024 * 1024;
+
+  private static final Pattern DISK_FILE_NAME = Pattern.compile("[0-9a-f]{64}");
+
+  private final long maxEntryBytes;
+  private final Cache<String, Entry> memory;
+  private final Path diskDir;
+  private final Cache<String, Path> disk;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong revalidations = new AtomicLong();
+
+  DavContentCache(long maxBytes, long maxEntryBytes, @Nullable Path diskDir, long diskMaxBytes)
+      throws IOException {
+    this.maxEntryBytes = Math.min(maxEntryBytes, maxBytes);
+    this.diskDir = (diskDir != null) ? Files.createDirectories(diskDir) : null;
+    this.disk = (diskDir != null) ? CacheBuilder.newBuilder()
+        .maximumWeight(diskMaxBytes)
+        .weigher((String key, Path file) -> (int) Math.min(file.toFile().length(),
+            Integer.MAX_VALUE))
+        .removalListener((RemovalNotification<String, Path> notification) -> deleteFile(
+            notification.getValue()))
+        .build() : null;
+    this.memory = CacheBuilder.newBuilder()
+        .maximumWeight(Math.max(maxBytes, 0))
+        .weigher((String key, Entry entry) -> entry.content.length)
+        .removalListener((RemovalNotification<String, Entry> notification) -> {
+          if (notification.getCause() == RemovalCause.SIZE) {
+            spillToDisk(notification.getKey(), notification.getValue());
+          }
+        })
+        .build();
+    if (this.diskDir != null) {
+      indexDisk();
+    }
+  }
+
+  /**
+   * adds the files spilled by a previous run to the disk tier, unreadable ones are deleted.
+   * Files not named like a cache file are left untouched.
+   */
+  private void indexDisk() throws IOException {
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(diskDir)) {
+      for (Path file : files) {
+        if (DISK_FILE_NAME.matcher(file.getFileName().toString()).matches()) {
+          String key = readDiskKey(file);
+          if ((key != null) && file.getFileName().toString().equals(getDiskFileName(key))) {
+            disk.put(key, file);
+          } else {
+            deleteFile(file);
+          }
+        }
+      }
+    }
+    LOGGER.info("indexDisk - {} entries in [{}]", disk.size(), diskDir);
+  }
+
+  @Nullable
+  private static String readDiskKey(Path file) {
+    try (InputStream is = Files.newInputStream(file);
+        DataInputStream in = new DataInputStream(is)) {
+      return in.readUTF();
+    } catch (IOException exc) {
+      LOGGER.debug("readDiskKey - failed for [{}]", file, exc);
+      return null;
+    }
+  }
+
+  private static String getDiskFileName(String key) {
+    return Hashing.sha256().hashString(key, StandardCharsets.UTF_8).toString();
+  }
+
+  @NotNull
+  Optional<Entry> get(@NotNull String key) {
+    Entry entry = memory.getIfPresent(key);
+    if ((entry == null) && (disk != null)) {
+      entry = loadFromDisk(key);
+    }
+    return Optional.ofNullable(entry);
+  }
+
+  /**
+   * caches the entry if it provides a validator and doesn't exceed the maximum entry size
+   */
+  void put(@NotNull String key, @NotNull Entry entry) {
+    if (entry.isValidatable() && (entry.content.length <= maxEntryBytes)) {
+      if (disk != null) {
+        disk.invalidate(key);
+      }
+      memory.put(key, entry);
+    } else {
+      invalidate(key);
+    }
+  }
+
+  void invalidate(@NotNull String key) {
+    memory.invalidate(key);
+    if (disk != null) {
+      disk.invalidate(key);
+    }
+  }
+
+  void invalidateAll() {
+    memory.invalidateAll();
+    if (disk != null) {
+      disk.invalidateAll();
+    }
+  }
+
+  void recordHit() {
+    hits.incrementAndGet();
+  }
+
+  void recordMiss() {
+    misses.incrementAndGet();
+  }
+
+  void recordRevalidation() {
+    revalidations.incrementAndGet();
+  }
+
+  @NotNull
+  Map<String, Long> getStats() {
+    Map<String, Long> stats = new LinkedHashMap<>();
+    stats.put("hits", hits.get());
+    stats.put("misses", misses.get());
+    stats.put("revalidations", revalidations.get());
+    stats.put("memoryEntries", memory.size());
+    stats.put("diskEntries", (disk != null) ? disk.size() : 0L);
+    return stats;
+  }
+
+  private void spillToDisk(String key, Entry entry) {
+    if (disk != null) {
+      Path file = diskDir.resolve(getDiskFileName(key));
+      try (OutputStream os = Files.newOutputStream(file);
+          DataOutputStream out = new DataOutputStream(os)) {
+        out.writeUTF(key);
+        out.writeUTF(nullToEmpty(entry.etag));
+        out.writeUTF(nullToEmpty(entry.lastModified));
+        out.writeInt(entry.content.length);
+        out.write(entry.content);
+      } catch (IOException exc) {
+        LOGGER.warn("spillToDisk - failed for [{}]", key, exc);
+        deleteFile(file);
+        return;
+      }
+      disk.put(key, file);
+    }
+  }
+
+  private Entry loadFromDisk(String key) {
+    Path file = disk.getIfPresent(key);
+    if (file != null) {
+      try (InputStream is = Files.newInputStream(file);
+          DataInputStream in = new DataInputStream(is)) {
+        if (key.equals(in.readUTF())) {
+          String etag = emptyToNull(in.readUTF());
+          String lastModified = emptyToNull(in.readUTF());
+          byte[] content = new byte[in.readInt()];
+          in.readFully(content);
+          Entry entry = new Entry(etag, lastModified, content);
+          put(key, entry);
+          return entry;
+        }
+      } catch (IOException exc) {
+        LOGGER.warn("loadFromDisk - failed for [{}]", key, exc);
+      }
+      disk.invalidate(key);
+    }
+    return null;
+  }
+
+  private static void deleteFile(Path file) {
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException exc) {
+      LOGGER.warn("deleteFile - failed for [{}]", file, exc);
+    }
+  }
+
+  static final class Entry {
+
+    final String etag;
+    final String lastModified;
+    final byte[] content;
+
+    Entry(@Nullable String etag, @Nullable String lastModified, @NotNull byte[] content) {
+      this.etag = etag;
+      this.lastModified = lastModified;
+      this.content = checkNotNull(content);
+    }
+
+    boolean isValidatable() {
+      return (etag != null) || (lastModified != null);
+    }
+
+  }
+
+}
@@ -0,0 +1,82 @@
+package com.celements.webdav;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.util.Locale;
+import java.util.Objects;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+
+import com.google.common.base.Splitter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Node-wide record of the content digests uploaded per resource. A record is only valid as long
+ * as the resource still has the ETag returned by the upload, thus it doesn't need to be
+ * invalidated on remote changes.
+ */
+class DavContentDigests {
+
+  static final String CFG_MAX_RECORDS = "webdav.dedup.maxRecords";
+  static final int DEFAULT_MAX_RECORDS = 100 * 1000;
+
+  static final String ALGORITHM = "SHA1";
+
+  private final Cache<String, Record> records;
+
+  DavContentDigests(int maxRecords) {
+    records = CacheBuilder.newBuilder()
+        .maximumSize(Math.max(maxRecords, 0))
+        .build();
+  }
+
+  void record(@NotNull String key, @NotNull String etag, @NotNull String digest) {
+    records.put(checkNotNull(key), new Record(checkNotNull(etag), checkNotNull(digest)));
+  }
+
+  /**
+   * @return true if the content with the given digest was uploaded and the resource didn't
+   *         change since
+   */
+  boolean matches(@NotNull String key, @Nullable String etag, @NotNull String digest) {
+    Record record = records.getIfPresent(key);
+    return (record != null) && (etag != null) && record.etag.equals(etag)
+        && record.digest.equalsIgnoreCase(digest);
+  }
+
+  void invalidateAll() {
+    records.invalidateAll();
+  }
+
+  /**
+   * @param checksums
+   *          the value of the 'oc:checksums' property, e.g. 'SHA1:abc MD5:def'
+   * @return the hex digest of the given algorithm or null if not provided
+   */
+  @Nullable
+  static String parseChecksum(@Nullable String checksums, @NotNull String algorithm) {
+    String prefix = algorithm.toUpperCase(Locale.ROOT) + ":";
+    for (String checksum : Splitter.onPattern("\\s+").omitEmptyStrings().split(
+        Objects.toString(checksums, ""))) {
+      if (checksum.toUpperCase(Locale.ROOT).startsWith(prefix)) {
+        return checksum.substring(prefix.length()).toLowerCase(Locale.ROOT);
+      }
+    }
+    return null;
+  }
+
+  private static final class Record {
+
+    final String etag;
+    final String digest;
+
+    Record(String etag, String digest) {
+      this.etag = etag;
+      this.digest = digest;
+    }
+
+  }
+
+}
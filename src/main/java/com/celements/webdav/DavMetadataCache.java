@@ -0,0 +1,137 @@
+package com.celements.webdav;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+import javax.xml.namespace.QName;
+
+import com.github.sardine.DavResource;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Node-wide cache of PROPFIND results, i.e. directory listings and single resources, keyed by
+ * remote login and normalised url. Entries expire after a short time to live since changes by
+ * other clients can't be observed, whereas local changes invalidate the affected entries
+ * immediately. Results of PROPFINDs restricted to a set of properties are only served for
+ * requests of the same or fewer properties.
+ */
+class DavMetadataCache {
+
+  static final String CFG_PREFIX = "webdav.metadatacache.";
+  static final String CFG_TTL = CFG_PREFIX + "ttlSec";
+  static final String CFG_MAX_ENTRIES = CFG_PREFIX + "maxEntries";
+
+  static final int DEFAULT_TTL = 10;
+  static final int DEFAULT_MAX_ENTRIES = 1000;
+
+  private final Cache<String, Entry<List<DavResource>>> listings;
+  private final Cache<String, Entry<Optional<DavResource>>> resources;
+
+  DavMetadataCache(int ttlSec, int maxEntries) {
+    listings = CacheBuilder.newBuilder()
+        .maximumSize(Math.max(maxEntries, 0))
+        .expireAfterWrite(Math.max(ttlSec, 0), TimeUnit.SECONDS)
+        .build();
+    resources = CacheBuilder.newBuilder()
+        .maximumSize(Math.max(maxEntries, 0) * 10L)
+        .expireAfterWrite(Math.max(ttlSec, 0), TimeUnit.SECONDS)
+        .build();
+  }
+
+  /**
+   * @return a key of the url independent of a trailing slash
+   */
+  @NotNull
+  static String normalize(@NotNull String url) {
+    String normalized = checkNotNull(url);
+    while ((normalized.length() > 1) && normalized.endsWith("/")) {
+      normalized = normalized.substring(0, normalized.length() - 1);
+    }
+    return normalized;
+  }
+
+  /**
+   * @param props
+   *          the requested properties, null for all
+   */
+  @NotNull
+  Optional<List<DavResource>> getListing(@NotNull String key, @Nullable Set<QName> props) {
+    return Optional.ofNullable(listings.getIfPresent(key)).filter(entry -> entry.covers(props))
+        .map(entry -> new ArrayList<>(entry.value));
+  }
+
+  void putListing(@NotNull String key, @Nullable Set<QName> props,
+      @NotNull List<DavResource> listing) {
+    listings.put(key, new Entry<>(props, new ArrayList<>(listing)));
+  }
+
+  /**
+   * @param props
+   *          the requested properties, null for all
+   * @return empty if unknown, otherwise the cached resource or an empty {@link Optional} if it's
+   *         known to not exist
+   */
+  @NotNull
+  Optional<Optional<DavResource>> getResource(@NotNull String key, @Nullable Set<QName> props) {
+    return Optional.ofNullable(resources.getIfPresent(key)).filter(
+        entry -> !entry.value.isPresent() || entry.covers(props)).map(entry -> entry.value);
+  }
+
+  void putResource(@NotNull String key, @Nullable Set<QName> props,
+      @NotNull Optional<DavResource> resource) {
+    resources.put(key, new Entry<>(props, resource));
+  }
+
+  /**
+   * invalidates the resource and its parent listing
+   */
+  void invalidate(@NotNull String key, @Nullable String parentKey) {
+    listings.invalidate(key);
+    resources.invalidate(key);
+    if (parentKey != null) {
+      listings.invalidate(parentKey);
+      resources.invalidate(parentKey);
+    }
+  }
+
+  /**
+   * invalidates the resource, its parent listing and all its descendants
+   */
+  void invalidateTree(@NotNull String key, @Nullable String parentKey) {
+    invalidate(key, parentKey);
+    String prefix = key + "/";
+    listings.asMap().keySet().removeIf(k -> k.startsWith(prefix));
+    resources.asMap().keySet().removeIf(k -> k.startsWith(prefix));
+  }
+
+  void invalidateAll() {
+    listings.invalidateAll();
+    resources.invalidateAll();
+  }
+
+  private static final class Entry<T> {
+
+    private final Set<QName> props;
+    private final T value;
+
+    Entry(@Nullable Set<QName> props, @NotNull T value) {
+      this.props = (props != null) ? ImmutableSet.copyOf(props) : null;
+      this.value = checkNotNull(value);
+    }
+
+    boolean covers(@Nullable Set<QName> requested) {
+      return (props == null) || ((requested != null) && props.containsAll(requested));
+    }
+
+  }
+
+}
@@ -0,0 +1,152 @@
+package com.celements.webdav;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.validation.constraints.NotNull;
+
+import org.apache.http.pool.PoolStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Node-wide metrics of the WebDAV requests per HTTP method and host, exposed over JMX in the
+ * domain {@value #JMX_DOMAIN}. Owned by the {@link SardineAdapter}, which unregisters the beans
+ * on dispose.
+ */
+class DavMetrics {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(DavMetrics.class);
+
+  static final String JMX_DOMAIN = "com.celements.webdav";
+
+  private final MBeanServer mbeanServer;
+  private final ConcurrentMap<String, DavOperationStats> stats = new ConcurrentHashMap<>();
+  private final Set<ObjectName> registered = ConcurrentHashMap.newKeySet();
+
+  DavMetrics() {
+    this(ManagementFactory.getPlatformMBeanServer());
+  }
+
+  DavMetrics(@NotNull MBeanServer mbeanServer) {
+    this.mbeanServer = checkNotNull(mbeanServer);
+  }
+
+  /**
+   * @return the stats of the single HTTP requests with the given method, e.g. 'PROPFIND'
+   */
+  @NotNull
+  DavOperationStats getRequestStats(@NotNull String method, @NotNull String host) {
+    return get("Request", "method", method, host);
+  }
+
+  /**
+   * @return the stats of an operation spanning several requests, e.g. 'connect'
+   */
+  @NotNull
+  DavOperationStats getOperationStats(@NotNull String operation, @NotNull String host) {
+    return get("Operation", "operation", operation, host);
+  }
+
+  private DavOperationStats get(String type, String nameKey, String name, String host) {
+    return stats.computeIfAbsent(type + "|" + name + "|" + host, key -> {
+      DavOperationStats opStats = new DavOperationStats();
+      register(JMX_DOMAIN + ":type=" + type + ",host=" + ObjectName.quote(host) + ","
+          + nameKey + "=" + name, opStats);
+      return opStats;
+    });
+  }
+
+  /**
+   * registers the gauges of the pool, replacing those of a previous pool with the same name
+   */
+  void registerPool(@NotNull String name, @NotNull SardinePool pool) {
+    register(getPoolObjectName(name), new DavPoolStatsMXBean() {
+
+      @Override
+      public int getLeased() {
+        return getTotalStats().getLeased();
+      }
+
+      @Override
+      public int getAvailable() {
+        return getTotalStats().getAvailable();
+      }
+
+      @Override
+      public int getPending() {
+        return getTotalStats().getPending();
+      }
+
+      @Override
+      public int getMax() {
+        return getTotalStats().getMax();
+      }
+
+      @Override
+      public long getClients() {
+        return pool.size();
+      }
+
+      private PoolStats getTotalStats() {
+        return pool.getConnectionManager().getTotalStats();
+      }
+    });
+  }
+
+  void unregisterPool(@NotNull String name) {
+    unregister(getPoolObjectName(name));
+  }
+
+  private String getPoolObjectName(String name) {
+    return JMX_DOMAIN + ":type=Pool,name=" + ObjectName.quote(name);
+  }
+
+  /**
+   * unregisters all beans registered by this instance and resets the stats
+   */
+  void unregisterAll() {
+    registered.forEach(this::unregister);
+    stats.clear();
+  }
+
+  private void register(String name, Object mbean) {
+    try {
+      ObjectName objectName = new ObjectName(name);
+      if (mbeanServer.isRegistered(objectName)) {
+        mbeanServer.unregisterMBean(objectName);
+      }
+      mbeanServer.registerMBean(mbean, objectName);
+      registered.add(objectName);
+    } catch (JMException exc) {
+      LOGGER.warn("register - failed for [{}]", name, exc);
+    }
+  }
+
+  private void unregister(String name) {
+    try {
+      unregister(new ObjectName(name));
+    } catch (JMException exc) {
+      LOGGER.warn("unregister - failed for [{}]", name, exc);
+    }
+  }
+
+  private void unregister(ObjectName objectName) {
+    registered.remove(objectName);
+    try {
+      if (mbeanServer.isRegistered(objectName)) {
+        mbeanServer.unregisterMBean(objectName);
+      }
+    } catch (JMException exc) {
+      LOGGER.warn("unregister - failed for [{}]", objectName, exc);
+    }
+  }
+
+}
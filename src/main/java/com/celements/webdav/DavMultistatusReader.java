@@ -0,0 +1,97 @@
+package com.celements.webdav;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+
+import javax.validation.constraints.NotNull;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.celements.webdav.WebDavService.DavResourceVisitor;
+import com.github.sardine.DavResource;
+import com.github.sardine.model.ObjectFactory;
+import com.github.sardine.model.Response;
+import com.github.sardine.util.SardineUtil;
+
+/**
+ * Reads a multistatus response incrementally. The XML is pulled with StAX and only a single
+ * {@code <D:response>} element at a time is unmarshalled into a {@link DavResource}, so memory
+ * usage doesn't depend on the number of resources in the response.
+ */
+final class DavMultistatusReader {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(DavMultistatusReader.class);
+
+  private static final String ELEM_RESPONSE = "response";
+
+  private DavMultistatusReader() {}
+
+  static void read(@NotNull InputStream is, @NotNull DavResourceVisitor visitor)
+      throws IOException {
+    XMLStreamReader reader = null;
+    try {
+      reader = newInputFactory().createXMLStreamReader(is);
+      Unmarshaller unmarshaller = JaxbContextHolder.CONTEXT.createUnmarshaller();
+      while (reader.hasNext()) {
+        if (isResponseStart(reader)) {
+          Response response = unmarshaller.unmarshal(reader, Response.class).getValue();
+          try {
+            visitor.visit(new DavResource(response));
+          } catch (URISyntaxException exc) {
+            LOGGER.warn("read - ignoring resource with invalid href {}", response.getHref(), exc);
+          }
+        } else {
+          reader.next();
+        }
+      }
+    } catch (XMLStreamException | JAXBException exc) {
+      throw new IOException("failed reading multistatus response", exc);
+    } finally {
+      if (reader != null) {
+        try {
+          reader.close();
+        } catch (XMLStreamException exc) {
+          LOGGER.debug("read - failed closing reader", exc);
+        }
+      }
+    }
+  }
+
+  private static boolean isResponseStart(XMLStreamReader reader) {
+    return (reader.getEventType() == XMLStreamConstants.START_ELEMENT)
+        && SardineUtil.DEFAULT_NAMESPACE_URI.equals(reader.getNamespaceURI())
+        && ELEM_RESPONSE.equals(reader.getLocalName());
+  }
+
+  private static XMLInputFactory newInputFactory() {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    return factory;
+  }
+
+  private static final class JaxbContextHolder {
+
+    static final JAXBContext CONTEXT;
+
+    static {
+      try {
+        CONTEXT = JAXBContext.newInstance(ObjectFactory.class);
+      } catch (JAXBException exc) {
+        throw new IllegalStateException("failed creating JAXB context", exc);
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,160 @@
+package com.celements.webdav;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram and counters of a single HTTP method or operation and host.
+ */
+class DavOperationStats implements DavOperationStatsMXBean {
+
+  static final String OUTCOME_SUCCESS = "success";
+  static final String OUTCOME_IO_ERROR = "ioError";
+
+  /**
+   * upper bounds of the histogram buckets in milliseconds, the last bucket is unbounded
+   */
+  private static final long[] BUCKETS = { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000,
+      10000, 30000, 60000 };
+
+  private final LongAdder count = new LongAdder();
+  private final LongAdder errorCount = new LongAdder();
+  private final LongAdder totalNanos = new LongAdder();
+  private final AtomicLong maxNanos = new AtomicLong();
+  private final LongAdder bytes = new LongAdder();
+  private final LongAdder retries = new LongAdder();
+  private final LongAdder bytesSkipped = new LongAdder();
+  private final ConcurrentMap<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+  private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS.length + 1);
+
+  void record(long nanos, String outcome) {
+    count.increment();
+    if (!OUTCOME_SUCCESS.equals(outcome)) {
+      errorCount.increment();
+    }
+    totalNanos.add(nanos);
+    maxNanos.accumulateAndGet(nanos, Math::max);
+    outcomes.computeIfAbsent(outcome, key -> new LongAdder()).increment();
+    histogram.incrementAndGet(getBucket(TimeUnit.NANOSECONDS.toMillis(nanos)));
+  }
+
+  void recordBytes(long count) {
+    if (count > 0) {
+      bytes.add(count);
+    }
+  }
+
+  void recordBytesSkipped(long count) {
+    if (count > 0) {
+      bytesSkipped.add(count);
+    }
+  }
+
+  void recordRetry() {
+    retries.increment();
+  }
+
+  private static int getBucket(long millis) {
+    int bucket = 0;
+    while ((bucket < BUCKETS.length) && (millis > BUCKETS[bucket])) {
+      bucket++;
+    }
+    return bucket;
+  }
+
+  @Override
+  public long getCount() {
+    return count.sum();
+  }
+
+  @Override
+  public long getErrorCount() {
+    return errorCount.sum();
+  }
+
+  @Override
+  public Map<String, Long> getOutcomes() {
+    Map<String, Long> ret = new TreeMap<>();
+    outcomes.forEach((outcome, counter) -> ret.put(outcome, counter.sum()));
+    return ret;
+  }
+
+  @Override
+  public long getBytesTransferred() {
+    return bytes.sum();
+  }
+
+  @Override
+  public long getBytesSkipped() {
+    return bytesSkipped.sum();
+  }
+
+  @Override
+  public long getRetryCount() {
+    return retries.sum();
+  }
+
+  @Override
+  public double getMeanMillis() {
+    long n = count.sum();
+    return (n > 0) ? (totalNanos.sum() / (double) n / TimeUnit.MILLISECONDS.toNanos(1)) : 0;
+  }
+
+  @Override
+  public long getMaxMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(maxNanos.get());
+  }
+
+  @Override
+  public long getP50Millis() {
+    return getPercentileMillis(0.5);
+  }
+
+  @Override
+  public long getP95Millis() {
+    return getPercentileMillis(0.95);
+  }
+
+  @Override
+  public long getP99Millis() {
+    return getPercentileMillis(0.99);
+  }
+
+  long getPercentileMillis(double quantile) {
+    long total = 0;
+    for (int i = 0; i < histogram.length(); i++) {
+      total += histogram.get(i);
+    }
+    long threshold = (long) Math.ceil(total * quantile);
+    long cumulated = 0;
+    for (int i = 0; (i < histogram.length()) && (total > 0); i++) {
+      cumulated += histogram.get(i);
+      if (cumulated >= threshold) {
+        return (i < BUCKETS.length) ? BUCKETS[i] : getMaxMillis();
+      }
+    }
+    return 0;
+  }
+
+  @Override
+  public void reset() {
+    count.reset();
+    errorCount.reset();
+    totalNanos.reset();
+    maxNanos.set(0);
+    bytes.reset();
+    retries.reset();
+    bytesSkipped.reset();
+    outcomes.clear();
+    for (int i = 0; i < histogram.length(); i++) {
+      histogram.set(i, 0);
+    }
+  }
+
+}
@@ -0,0 +1,50 @@
+package com.celements.webdav;
+
+import java.util.Map;
+
+/**
+ * JMX view on the requests with an HTTP method against a remote host, registered as
+ * {@code com.celements.webdav:type=Request,host=<host>,method=<method>}, or on an operation
+ * spanning several requests, registered as
+ * {@code com.celements.webdav:type=Operation,host=<host>,operation=<operation>}.
+ */
+public interface DavOperationStatsMXBean {
+
+  long getCount();
+
+  long getErrorCount();
+
+  /**
+   * @return the number of requests by outcome: 'success', the HTTP status code of a failed
+   *         response or 'ioError' if no response was received
+   */
+  Map<String, Long> getOutcomes();
+
+  long getBytesTransferred();
+
+  /**
+   * @return the number of bytes not transferred since the remote content was identical
+   */
+  long getBytesSkipped();
+
+  /**
+   * @return the number of retried requests, each retry is counted in {@link #getCount()} as well
+   */
+  long getRetryCount();
+
+  double getMeanMillis();
+
+  long getMaxMillis();
+
+  /**
+   * percentiles are approximated by the upper bound of the latency histogram bucket
+   */
+  long getP50Millis();
+
+  long getP95Millis();
+
+  long getP99Millis();
+
+  void reset();
+
+}
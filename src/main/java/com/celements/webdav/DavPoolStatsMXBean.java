@@ -0,0 +1,19 @@
+package com.celements.webdav;
+
+/**
+ * JMX view on the shared HTTP connection pool, registered as
+ * {@code com.celements.webdav:type=Pool,name=<service>}.
+ */
+public interface DavPoolStatsMXBean {
+
+  int getLeased();
+
+  int getAvailable();
+
+  int getPending();
+
+  int getMax();
+
+  long getClients();
+
+}
@@ -0,0 +1,64 @@
+package com.celements.webdav;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * Wraps the content of a request body, e.g. of a PUT, so that a failure reading it is told apart
+ * from a failure of the remote host: its exceptions are thrown as {@link ReadException}.
+ */
+class DavRequestBodyStream extends FilterInputStream {
+
+  DavRequestBodyStream(@NotNull InputStream in) {
+    super(in);
+  }
+
+  @Override
+  public int read() throws IOException {
+    try {
+      return super.read();
+    } catch (IOException exc) {
+      throw new ReadException(exc);
+    }
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    try {
+      return super.read(b, off, len);
+    } catch (IOException exc) {
+      throw new ReadException(exc);
+    }
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    try {
+      return super.skip(n);
+    } catch (IOException exc) {
+      throw new ReadException(exc);
+    }
+  }
+
+  /**
+   * failure reading the request body, the cause being the original exception
+   */
+  static class ReadException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    ReadException(IOException cause) {
+      super(cause.getMessage(), cause);
+    }
+
+    @Override
+    public synchronized IOException getCause() {
+      return (IOException) super.getCause();
+    }
+
+  }
+
+}
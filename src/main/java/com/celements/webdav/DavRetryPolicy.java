@@ -0,0 +1,79 @@
+package com.celements.webdav;
+
+import java.io.IOException;
+import java.net.SocketException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.validation.constraints.NotNull;
+
+import org.apache.http.NoHttpResponseException;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+
+import com.github.sardine.impl.SardineException;
+
+/**
+ * Retry policy for idempotent requests. Transient failures, i.e. '502 Bad Gateway',
+ * '503 Service Unavailable', '504 Gateway Timeout' and connection resets, are retried with an
+ * exponential backoff and full jitter. A timeout leasing from the local connection pool isn't
+ * retried. A 'Retry-After' of the server takes precedence over the backoff. Retrying stops once
+ * the maximum attempts are reached or the next delay would exceed the time budget.
+ */
+class DavRetryPolicy {
+
+  static final String CFG_PREFIX = "webdav.retry.";
+  static final String CFG_MAX_ATTEMPTS = CFG_PREFIX + "maxAttempts";
+  static final String CFG_BUDGET = CFG_PREFIX + "budgetMs";
+  static final String CFG_BASE_DELAY = CFG_PREFIX + "baseDelayMs";
+  static final String CFG_MAX_DELAY = CFG_PREFIX + "maxDelayMs";
+
+  static final int DEFAULT_MAX_ATTEMPTS = 3;
+  static final int DEFAULT_BUDGET = 10 * 1000;
+  static final int DEFAULT_BASE_DELAY = 100;
+  static final int DEFAULT_MAX_DELAY = 2 * 1000;
+
+  private final int maxAttempts;
+  private final long budgetNanos;
+  private final long baseDelayMillis;
+  private final long maxDelayMillis;
+
+  DavRetryPolicy(int maxAttempts, int budgetMillis, int baseDelayMillis, int maxDelayMillis) {
+    this.maxAttempts = Math.max(maxAttempts, 1);
+    this.budgetNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(budgetMillis, 0));
+    this.baseDelayMillis = Math.max(baseDelayMillis, 1);
+    this.maxDelayMillis = Math.max(maxDelayMillis, this.baseDelayMillis);
+  }
+
+  int getMaxAttempts() {
+    return maxAttempts;
+  }
+
+  long getBudgetNanos() {
+    return budgetNanos;
+  }
+
+  static boolean isRetryable(@NotNull IOException exc) {
+    if (exc instanceof SardineException) {
+      int status = ((SardineException) exc).getStatusCode();
+      return (status == 502) || (status == 503) || (status == 504);
+    }
+    return (exc instanceof SocketException) || (exc instanceof NoHttpResponseException)
+        || ((exc instanceof ConnectTimeoutException)
+            && !(exc instanceof ConnectionPoolTimeoutException));
+  }
+
+  /**
+   * @param attempt
+   *          the number of the failed attempt, starting at 1
+   * @return the delay before the next attempt, the server's 'Retry-After' if given
+   */
+  long getDelayMillis(int attempt, @NotNull IOException exc) {
+    if (exc instanceof SardineClient.RetryAfterException) {
+      return ((SardineClient.RetryAfterException) exc).getRetryAfterMillis();
+    }
+    long ceiling = Math.min(maxDelayMillis, baseDelayMillis << Math.min(attempt - 1, 30));
+    return ThreadLocalRandom.current().nextLong(ceiling + 1);
+  }
+
+}
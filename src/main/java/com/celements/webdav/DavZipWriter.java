@@ -0,0 +1,288 @@
+package com.celements.webdav;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.celements.webdav.exception.DavResourceAccessException;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+
+/**
+ * Streams files as ZIP archive. While an entry is being written, the contents of the following
+ * entries are prefetched in parallel as long as they fit into the read-ahead budget. Larger files
+ * and those of unknown size are streamed when their turn comes. Content which is compressed
+ * already is stored instead of deflated.
+ */
+class DavZipWriter {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(DavZipWriter.class);
+
+  static final String CFG_PREFIX = "webdav.zip.";
+  static final String CFG_PREFETCH = CFG_PREFIX + "prefetch";
+  static final String CFG_READ_AHEAD = CFG_PREFIX + "readAheadBytes";
+
+  static final int DEFAULT_PREFETCH = 4;
+  static final int DEFAULT_READ_AHEAD = 32 * 1024 * 1024;
+
+  private static final Pattern UNSAFE_NAME = Pattern.compile(
+      "(^|[/\\\\])\\.\\.([/\\\\]|$)|^[/\\\\]|^[a-zA-Z]:");
+
+  static final Set<String> COMPRESSED_EXTENSIONS = ImmutableSet.of("zip", "gz", "tgz", "bz2",
+      "xz", "7z", "rar", "jar", "docx", "xlsx", "pptx", "odt", "ods", "odp", "jpg", "jpeg", "png",
+      "gif", "webp", "mp3", "m4a", "ogg", "mp4", "m4v", "mov", "avi", "mkv", "webm");
+
+  private final ExecutorService executor;
+  private final int maxPrefetch;
+  private final long readAheadBytes;
+
+  /**
+   * @param maxPrefetch
+   *          the maximum number of entries loaded at once, including the one being written
+   */
+  DavZipWriter(@NotNull ExecutorService executor, int maxPrefetch, long readAheadBytes) {
+    this.executor = checkNotNull(executor);
+    this.maxPrefetch = Math.max(maxPrefetch, 1);
+    this.readAheadBytes = Math.max(readAheadBytes, 0);
+  }
+
+  @FunctionalInterface
+  interface ContentLoader {
+
+    @NotNull
+    InputStream open(@NotNull Path filePath) throws IOException, DavResourceAccessException;
+
+  }
+
+  static final class Entry {
+
+    final Path path;
+    final String name;
+    final long size;
+    final String contentType;
+    final long modified;
+
+    /**
+     * @param size
+     *          the expected content length or -1 if unknown
+     * @param modified
+     *          the modification time or -1 if unknown
+     */
+    Entry(@NotNull Path path, @NotNull String name, long size, @Nullable String contentType,
+        long modified) {
+      this.path = checkNotNull(path);
+      this.name = checkNotNull(name);
+      this.size = size;
+      this.contentType = contentType;
+      this.modified = modified;
+    }
+
+    boolean isCompressed() {
+      String type = (contentType != null) ? contentType.toLowerCase(Locale.ROOT) : "";
+      return COMPRESSED_EXTENSIONS.contains(Files.getFileExtension(name).toLowerCase(
+          Locale.ROOT)) || type.startsWith("image/jpeg") || type.startsWith("image/png")
+          || type.startsWith("video/") || type.startsWith("audio/") || type.contains("zip")
+          || type.contains("compressed");
+    }
+
+  }
+
+  private static final class Pending {
+
+    final Entry entry;
+    final Future<byte[]> content;
+
+    Pending(Entry entry, @Nullable Future<byte[]> content) {
+      this.entry = entry;
+      this.content = content;
+    }
+
+  }
+
+  /**
+   * writes the entries in the given order. A file failing before its entry is started is
+   * skipped and reported, a failure while streaming an entry aborts the archive. Entries with an
+   * unsafe name are skipped and reported as well.
+   *
+   * @return the number of bytes written per file
+   */
+  @NotNull
+  DavBatchResult<Long> write(@NotNull List<Entry> entries, @NotNull ContentLoader loader,
+      @NotNull OutputStream out) throws IOException {
+    DavBatchResult<Long> result = new DavBatchResult<>();
+    List<Entry> accepted = new ArrayList<>();
+    for (Entry entry : entries) {
+      if (isSafeName(entry.name)) {
+        accepted.add(entry);
+      } else {
+        skipEntry(entry, new ZipException("unsafe entry name: " + entry.name), result);
+      }
+    }
+    Deque<Pending> pending = new ArrayDeque<>();
+    ZipOutputStream zip = new ZipOutputStream(out);
+    int next = 0;
+    long reserved = 0;
+    try {
+      while ((next < accepted.size()) || !pending.isEmpty()) {
+        while ((next < accepted.size()) && (pending.size() < maxPrefetch)) {
+          Entry entry = accepted.get(next);
+          Future<byte[]> content = null;
+          if ((entry.size >= 0) && (entry.size <= readAheadBytes)) {
+            if (((reserved + entry.size) > readAheadBytes) && !pending.isEmpty()) {
+              break;
+            }
+            reserved += entry.size;
+            content = executor.submit(() -> prefetch(entry, loader));
+          }
+          pending.add(new Pending(entry, content));
+          next++;
+        }
+        Pending current = pending.poll();
+        if (current.content != null) {
+          reserved -= current.entry.size;
+        }
+        writeEntry(zip, current, loader, result);
+      }
+      zip.finish();
+    } finally {
+      pending.stream().filter(p -> p.content != null).forEach(p -> p.content.cancel(true));
+    }
+    LOGGER.info("write - {} entries : {} failed", entries.size(), result.getErrors().size());
+    return result;
+  }
+
+  /**
+   * @return false for names which would be extracted outside the target directory (zip slip),
+   *         i.e. names with a '..' segment or absolute paths
+   */
+  static boolean isSafeName(@NotNull String name) {
+    return !name.isEmpty() && !UNSAFE_NAME.matcher(name).find();
+  }
+
+  /**
+   * @return the content or null if it exceeds its expected size, it's then streamed instead
+   */
+  @Nullable
+  private static byte[] prefetch(Entry entry, ContentLoader loader) throws IOException,
+      DavResourceAccessException {
+    try (InputStream is = loader.open(entry.path)) {
+      byte[] content = ByteStreams.toByteArray(ByteStreams.limit(is, entry.size + 1));
+      return (content.length <= entry.size) ? content : null;
+    }
+  }
+
+  private void writeEntry(ZipOutputStream zip, Pending pending, ContentLoader loader,
+      DavBatchResult<Long> result) throws IOException {
+    Entry entry = pending.entry;
+    byte[] content = null;
+    InputStream is = null;
+    try {
+      content = (pending.content != null) ? getContent(pending.content) : null;
+      if (content == null) {
+        is = loader.open(entry.path);
+      }
+    } catch (ExecutionException exc) {
+      skipEntry(entry, (exc.getCause() instanceof Exception) ? (Exception) exc.getCause() : exc,
+          result);
+      return;
+    } catch (InterruptedIOException exc) {
+      throw exc;
+    } catch (IOException | DavResourceAccessException exc) {
+      skipEntry(entry, exc, result);
+      return;
+    }
+    try {
+      zip.putNextEntry(newZipEntry(zip, entry, content));
+    } catch (ZipException exc) {
+      close(is, entry);
+      skipEntry(entry, exc, result);
+      return;
+    }
+    if (content != null) {
+      zip.write(content);
+      result.addResult(entry.path, (long) content.length);
+    } else {
+      try {
+        result.addResult(entry.path, IOUtils.copyLarge(is, zip,
+            new byte[SardineAdapter.STREAM_BUFFER_SIZE]));
+      } finally {
+        is.close();
+      }
+    }
+    zip.closeEntry();
+  }
+
+  private static void close(@Nullable InputStream is, Entry entry) {
+    if (is != null) {
+      try {
+        is.close();
+      } catch (IOException exc) {
+        LOGGER.debug("writeEntry - failed closing [{}]", entry.path, exc);
+      }
+    }
+  }
+
+  private void skipEntry(Entry entry, Exception exc, DavBatchResult<Long> result) {
+    LOGGER.info("writeEntry - skipping [{}]", entry.path, exc);
+    result.addError(entry.path, exc);
+  }
+
+  /**
+   * prefetched content which is compressed already is stored, whereas streamed content is
+   * deflated without compression since the CRC of a stored entry has to be known upfront
+   */
+  private ZipEntry newZipEntry(ZipOutputStream zip, Entry entry, @Nullable byte[] content) {
+    zip.setLevel(entry.isCompressed() ? Deflater.NO_COMPRESSION : Deflater.DEFAULT_COMPRESSION);
+    ZipEntry zipEntry = new ZipEntry(entry.name);
+    if (entry.modified >= 0) {
+      zipEntry.setTime(entry.modified);
+    }
+    if ((content != null) && entry.isCompressed()) {
+      CRC32 crc = new CRC32();
+      crc.update(content);
+      zipEntry.setMethod(ZipEntry.STORED);
+      zipEntry.setSize(content.length);
+      zipEntry.setCompressedSize(content.length);
+      zipEntry.setCrc(crc.getValue());
+    }
+    return zipEntry;
+  }
+
+  private static byte[] getContent(Future<byte[]> content) throws ExecutionException,
+      InterruptedIOException {
+    try {
+      return content.get();
+    } catch (InterruptedException exc) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("zip interrupted");
+    }
+  }
+
+}
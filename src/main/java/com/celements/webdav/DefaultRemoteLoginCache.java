@@ -0,0 +1,60 @@
+package com.celements.webdav;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.configuration.ConfigurationException;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.model.reference.DocumentReference;
+
+import com.celements.auth.RemoteLogin;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+@Component
+public class DefaultRemoteLoginCache implements RemoteLoginCache {
+
+  static final int MAX_SIZE = 1000;
+  static final int EXPIRE = 60 * 60;
+
+  private final Cache<DocumentReference, RemoteLogin> remoteLogins;
+
+  public DefaultRemoteLoginCache() {
+    this(MAX_SIZE, EXPIRE);
+  }
+
+  DefaultRemoteLoginCache(int maxSize, int expireSec) {
+    remoteLogins = CacheBuilder.newBuilder()
+        .maximumSize(maxSize)
+        .expireAfterWrite(expireSec, TimeUnit.SECONDS)
+        .build();
+  }
+
+  @Override
+  public RemoteLogin get(DocumentReference docRef, Callable<RemoteLogin> loader)
+      throws ConfigurationException {
+    try {
+      return remoteLogins.get(checkNotNull(docRef), loader);
+    } catch (ExecutionException | UncheckedExecutionException exc) {
+      if (exc.getCause() instanceof ConfigurationException) {
+        throw (ConfigurationException) exc.getCause();
+      }
+      throw new ConfigurationException("failed to load remote login: " + docRef, exc.getCause());
+    }
+  }
+
+  @Override
+  public void invalidate(DocumentReference docRef) {
+    remoteLogins.invalidate(docRef);
+  }
+
+  @Override
+  public void invalidateAll() {
+    remoteLogins.invalidateAll();
+  }
+
+}
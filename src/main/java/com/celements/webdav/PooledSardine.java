@@ -0,0 +1,149 @@
+package com.celements.webdav;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.io.IOException;
+
+import javax.validation.constraints.NotNull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.sardine.Sardine;
+
+/**
+ * A {@link Sardine} client held by the {@link SardinePool}. It counts the connections currently
+ * using it, so a client evicted from the pool is only shut down once the last connection is
+ * released. Additionally it tracks the time of the last successful response, which allows to skip
+ * the connection probe as long as the client is known to be healthy. Optional capabilities the
+ * server refused are remembered, so connections of the client don't request them again.
+ */
+class PooledSardine {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(PooledSardine.class);
+
+  private final String key;
+  private final SardineClient sardine;
+
+  private int leases = 0;
+  private boolean retired = false;
+  private boolean shutdown = false;
+  private volatile long lastSuccess = 0;
+  private volatile boolean infiniteDepthRefused = false;
+  private volatile boolean syncCollectionRefused = false;
+  private volatile boolean chunkedUploadRefused = false;
+
+  PooledSardine(String key, SardineClient sardine) {
+    this.key = checkNotNull(key);
+    this.sardine = checkNotNull(sardine);
+  }
+
+  /**
+   * @return the pool key identifying the remote login
+   */
+  @NotNull
+  String getKey() {
+    return key;
+  }
+
+  @NotNull
+  SardineClient getSardine() {
+    return sardine;
+  }
+
+  /**
+   * records a response from the server, regardless of its status code
+   */
+  void markHealthy() {
+    lastSuccess = System.currentTimeMillis();
+  }
+
+  /**
+   * forces a connection probe on the next lease, e.g. after a connection-level failure
+   */
+  void markUnhealthy() {
+    lastSuccess = 0;
+  }
+
+  /**
+   * @return true if the server responded within the given time to live
+   */
+  boolean isHealthy(long ttlMillis) {
+    return (System.currentTimeMillis() - lastSuccess) < ttlMillis;
+  }
+
+  /**
+   * @return true if the server refused a PROPFIND with 'Depth: infinity'
+   */
+  boolean isInfiniteDepthRefused() {
+    return infiniteDepthRefused;
+  }
+
+  void markInfiniteDepthRefused() {
+    infiniteDepthRefused = true;
+  }
+
+  /**
+   * @return true if the server refused the sync-collection REPORT
+   */
+  boolean isSyncCollectionRefused() {
+    return syncCollectionRefused;
+  }
+
+  void markSyncCollectionRefused() {
+    syncCollectionRefused = true;
+  }
+
+  /**
+   * @return true if the server refused a Nextcloud/ownCloud chunked upload
+   */
+  boolean isChunkedUploadRefused() {
+    return chunkedUploadRefused;
+  }
+
+  void markChunkedUploadRefused() {
+    chunkedUploadRefused = true;
+  }
+
+  /**
+   * @return false if the client was retired meanwhile and may not be used anymore
+   */
+  synchronized boolean lease() {
+    if (!retired) {
+      leases++;
+    }
+    return !retired;
+  }
+
+  synchronized void release() {
+    if (leases > 0) {
+      leases--;
+    }
+    shutdownIfUnused();
+  }
+
+  /**
+   * marks the client as removed from the pool, it's shut down as soon as it isn't leased anymore
+   */
+  synchronized void retire() {
+    retired = true;
+    shutdownIfUnused();
+  }
+
+  synchronized boolean isRetired() {
+    return retired;
+  }
+
+  private void shutdownIfUnused() {
+    if (retired && (leases == 0) && !shutdown) {
+      shutdown = true;
+      try {
+        sardine.shutdown();
+        LOGGER.debug("shutdown - [{}]", sardine.hashCode());
+      } catch (IOException exc) {
+        LOGGER.warn("shutdown - failed for [{}]", sardine.hashCode(), exc);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,32 @@
+package com.celements.webdav;
+
+import java.util.concurrent.Callable;
+
+import javax.validation.constraints.NotNull;
+
+import org.apache.commons.configuration.ConfigurationException;
+import org.xwiki.component.annotation.ComponentRole;
+import org.xwiki.model.reference.DocumentReference;
+
+import com.celements.auth.RemoteLogin;
+
+/**
+ * Node-wide cache of the remote logins by config doc. Entries are invalidated by the
+ * {@link WebDavConfigDocListener} on changes of the config doc and expire after a while in case
+ * an event got lost.
+ */
+@ComponentRole
+public interface RemoteLoginCache {
+
+  /**
+   * @return the cached remote login of the config doc, loaded with the given loader if missing
+   */
+  @NotNull
+  RemoteLogin get(@NotNull DocumentReference docRef, @NotNull Callable<RemoteLogin> loader)
+      throws ConfigurationException;
+
+  void invalidate(@NotNull DocumentReference docRef);
+
+  void invalidateAll();
+
+}
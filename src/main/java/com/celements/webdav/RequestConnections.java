@@ -0,0 +1,138 @@
+package com.celements.webdav;
+
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.net.MalformedURLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.model.reference.DocumentReference;
+
+import com.celements.auth.RemoteLogin;
+import com.celements.webdav.WebDavService.WebDavConnection;
+import com.celements.webdav.exception.DavConnectionException;
+
+/**
+ * Connections shared by all script service calls of a request, one per remote login. They are
+ * kept in the execution context and released at the end of the request by the
+ * {@link WebDavRequestListener} or explicitly by closing a {@link WebDavScriptSession}. Contexts
+ * not ending with an executed action, e.g. of a scheduler job or a REST call, have to use a
+ * session. A context garbage collected without its connections being released is logged as a
+ * leak by {@link #detectLeaks()}, its connections are not closed.
+ */
+class RequestConnections {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(RequestConnections.class);
+
+  static final String EXEC_CONTEXT_KEY = "celements.webdav.connections";
+
+  private static final ReferenceQueue<ExecutionContext> DISCARDED = new ReferenceQueue<>();
+  private static final Set<ContextReference> TRACKED = ConcurrentHashMap.newKeySet();
+
+  private final Map<DocumentReference, WebDavConnection> connections = new LinkedHashMap<>();
+  private ContextReference contextRef;
+
+  /**
+   * @return the connections of the execution context, created if missing
+   */
+  @NotNull
+  static RequestConnections get(@NotNull ExecutionContext execContext) {
+    detectLeaks();
+    RequestConnections ret = find(execContext);
+    if (ret == null) {
+      ret = new RequestConnections();
+      ret.contextRef = new ContextReference(execContext, ret);
+      execContext.setProperty(EXEC_CONTEXT_KEY, ret);
+      TRACKED.add(ret.contextRef);
+    }
+    return ret;
+  }
+
+  /**
+   * logs the connections of the execution contexts garbage collected without being released
+   *
+   * @return the number of such contexts
+   */
+  static int detectLeaks() {
+    int count = 0;
+    Reference<? extends ExecutionContext> ref;
+    while ((ref = DISCARDED.poll()) != null) {
+      if (TRACKED.remove(ref)) {
+        count++;
+        LOGGER.warn("detectLeaks - {} connections of a discarded context have not been released,"
+            + " use a WebDavScriptSession outside of a request",
+            ((ContextReference) ref).connections.size());
+      }
+    }
+    return count;
+  }
+
+  /**
+   * closes and removes the connections of the execution context, if any
+   */
+  static void release(@Nullable ExecutionContext execContext) {
+    RequestConnections connections = find(execContext);
+    if (connections != null) {
+      execContext.removeProperty(EXEC_CONTEXT_KEY);
+      TRACKED.remove(connections.contextRef);
+      connections.contextRef.clear();
+      connections.closeAll();
+    }
+  }
+
+  @Nullable
+  private static RequestConnections find(@Nullable ExecutionContext execContext) {
+    Object property = (execContext != null) ? execContext.getProperty(EXEC_CONTEXT_KEY) : null;
+    return (property instanceof RequestConnections) ? (RequestConnections) property : null;
+  }
+
+  @NotNull
+  synchronized WebDavConnection getConnection(@NotNull WebDavService webDavService,
+      @NotNull RemoteLogin remoteLogin) throws DavConnectionException, MalformedURLException {
+    WebDavConnection webDav = connections.get(remoteLogin.getDocumentReference());
+    if (webDav == null) {
+      webDav = webDavService.connect(remoteLogin);
+      connections.put(remoteLogin.getDocumentReference(), webDav);
+      LOGGER.debug("getConnection - opened for {}", remoteLogin.getDocumentReference());
+    }
+    return webDav;
+  }
+
+  synchronized int size() {
+    return connections.size();
+  }
+
+  private synchronized void closeAll() {
+    connections.forEach((docRef, webDav) -> {
+      try {
+        webDav.close();
+        LOGGER.debug("closeAll - released for {}", docRef);
+      } catch (IOException | RuntimeException exc) {
+        LOGGER.warn("closeAll - failed for {}", docRef, exc);
+      }
+    });
+    connections.clear();
+  }
+
+  private static class ContextReference extends WeakReference<ExecutionContext> {
+
+    private final RequestConnections connections;
+
+    ContextReference(ExecutionContext execContext, RequestConnections connections) {
+      super(execContext, DISCARDED);
+      this.connections = connections;
+    }
+
+  }
+
+}
@@ -1,51 +1,98 @@
 package com.celements.webdav;
 
 import static com.google.common.base.Preconditions.*;
+import static com.google.common.base.Strings.*;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
 import java.net.MalformedURLException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.security.GeneralSecurityException;
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipException;
 
 import javax.annotation.Nullable;
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLException;
 import javax.validation.constraints.NotNull;
 import javax.ws.rs.core.UriBuilder;
 import javax.ws.rs.core.UriBuilderException;
+import javax.xml.namespace.QName;
 
 import org.apache.commons.configuration.ConfigurationException;
 import org.apache.commons.io.IOUtils;
-import org.apache.http.conn.socket.ConnectionSocketFactory;
-import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.NoHttpResponseException;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
 import org.apache.http.conn.ssl.TrustSelfSignedStrategy;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.protocol.HTTP;
 import org.apache.http.ssl.SSLContexts;
+import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.annotation.Requirement;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
 import org.xwiki.component.phase.Initializable;
 import org.xwiki.component.phase.InitializationException;
 import org.xwiki.configuration.ConfigurationSource;
-import org.xwiki.context.Execution;
 import org.xwiki.model.reference.DocumentReference;
 
 import com.celements.auth.RemoteLogin;
 import com.celements.auth.classes.RemoteLoginClass;
-import com.celements.configuration.CelementsFromWikiConfigurationSource;
 import com.celements.configuration.ConfigSourceUtils;
 import com.celements.convert.bean.XDocBeanLoader;
 import com.celements.convert.bean.XDocBeanLoader.BeanLoadException;
 import com.celements.model.classes.ClassDefinition;
 import com.celements.model.context.ModelContext;
 import com.celements.model.reference.RefBuilder;
+import com.celements.webdav.exception.DavCircuitOpenException;
 import com.celements.webdav.exception.DavConnectionException;
 import com.celements.webdav.exception.DavFileNotExistsException;
 import com.celements.webdav.exception.DavResourceAccessException;
@@ -53,46 +100,136 @@ import com.celements.webdav.exception.DavResourceAlreadyExistsException;
 import com.github.sardine.DavResource;
 import com.github.sardine.Sardine;
 import com.github.sardine.impl.SardineException;
-import com.github.sardine.impl.SardineImpl;
+import com.github.sardine.impl.handler.VoidResponseHandler;
+import com.github.sardine.report.SyncCollectionReport;
+import com.google.common.base.Splitter;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteSource;
+import com.google.common.io.CountingInputStream;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 @Component(SardineAdapter.NAME)
-public class SardineAdapter implements WebDavService, Initializable {
+public class SardineAdapter implements WebDavService, Initializable, Disposable {
 
   public static final String NAME = "sardine";
 
+  static final String NODE_CONFIG_SOURCE = "xwikiproperties";
+
   private static final Logger LOGGER = LoggerFactory.getLogger(SardineAdapter.class);
-  private static final String EC_KEY = "WebDAV.Sardine";
+
+  static final int STREAM_BUFFER_SIZE = 64 * 1024;
+  static final String CFG_BATCH_PARALLELISM = "webdav.batch.parallelism";
+  static final String CFG_CONNECT_TIMEOUT = "webdav.timeout.connectMs";
+  static final String CFG_SOCKET_TIMEOUT = "webdav.timeout.readMs";
+  static final String CFG_LEASE_TIMEOUT = "webdav.timeout.leaseMs";
+  static final int DEFAULT_CONNECT_TIMEOUT = 10 * 1000;
+  static final int DEFAULT_SOCKET_TIMEOUT = 60 * 1000;
+  static final int DEFAULT_LEASE_TIMEOUT = 10 * 1000;
+  static final int DEFAULT_BATCH_PARALLELISM = 4;
+  static final String CFG_UPLOAD_CHUNK_SIZE = "webdav.upload.chunkSize";
+  static final int DEFAULT_UPLOAD_CHUNK_SIZE = 10 * 1024 * 1024;
+  static final int MAX_UPLOAD_PARTS = 10000;
+  static final String OC_TOTAL_LENGTH = "OC-Total-Length";
+  static final String OC_CHECKSUM = "OC-Checksum";
+  static final String OC_NAMESPACE_URI = "http://owncloud.org/ns";
+  static final QName OC_CHECKSUMS = new QName(OC_NAMESPACE_URI, "checksums", "oc");
+  static final Set<QName> CHECKSUM_PROPS = ImmutableSet.<QName>builder().addAll(MINIMAL_PROPS)
+      .add(OC_CHECKSUMS).build();
+  static final Pattern CHUNKED_UPLOAD_BASE = Pattern.compile("(.*/remote\\.php/dav)/files/"
+      + "([^/]+)(/.*)?");
 
   @Requirement(RemoteLoginClass.CLASS_DEF_HINT)
   ClassDefinition remoteLoginClass;
 
-  @Requirement
-  Execution execution;
-
   @Requirement
   private ModelContext context;
 
-  @Requirement(CelementsFromWikiConfigurationSource.NAME)
-  private ConfigurationSource cfgSrc;
+  /**
+   * the pool, caches and executors are shared by all wikis of the node, thus they're configured
+   * in the xwiki.properties instead of per wiki
+   */
+  @Requirement(NODE_CONFIG_SOURCE)
+  private ConfigurationSource nodeCfgSrc;
 
   @Requirement
   private XDocBeanLoader<RemoteLogin> remoteLoginLoader;
 
+  @Requirement
+  private RemoteLoginCache remoteLoginCache;
+
+  private volatile SardinePool sardinePool;
+  private volatile DavContentCache contentCache;
+  private volatile DavMetadataCache metadataCache;
+  private volatile DavChangeSnapshots changeSnapshots;
+  private volatile ExecutorService batchExecutor;
+  private volatile DavAsyncExecutor asyncExecutor;
+  private volatile DavCircuitBreaker circuitBreaker;
+  private volatile DavRetryPolicy retryPolicy;
+  private volatile DavContentDigests contentDigests;
+  private DavMetrics metrics;
+  private final ConcurrentMap<String, SSLContext> sslContexts = new ConcurrentHashMap<>();
+
   @Override
   public void initialize() throws InitializationException {
     remoteLoginLoader.initialize(RemoteLogin.class, remoteLoginClass);
+    metrics = new DavMetrics();
   }
 
+  @Override
+  public void dispose() throws ComponentLifecycleException {
+    synchronized (this) {
+      if (sardinePool != null) {
+        sardinePool.shutdown();
+        sardinePool = null;
+      }
+      if (contentCache != null) {
+        contentCache.invalidateAll();
+        contentCache = null;
+      }
+      if (metadataCache != null) {
+        metadataCache.invalidateAll();
+        metadataCache = null;
+      }
+      if (changeSnapshots != null) {
+        changeSnapshots.invalidateAll();
+        changeSnapshots = null;
+      }
+      if (batchExecutor != null) {
+        batchExecutor.shutdownNow();
+        batchExecutor = null;
+      }
+      if (contentDigests != null) {
+        contentDigests.invalidateAll();
+        contentDigests = null;
+      }
+      if (asyncExecutor != null) {
+        asyncExecutor.shutdown();
+        asyncExecutor = null;
+      }
+    }
+    metrics.unregisterAll();
+  }
+
+  /**
+   * the remote login is cached per config doc and invalidated by the
+   * {@link WebDavConfigDocListener} once the doc changes
+   */
   @Override
   public RemoteLogin getConfiguredRemoteLogin() throws ConfigurationException {
     DocumentReference webDavConfigDocRef = ConfigSourceUtils.getReferenceProperty(
         "webdav.configdoc", DocumentReference.class).or(getDefaultConfigDocRef());
-    LOGGER.info("getConfiguredRemoteLogin - {}", webDavConfigDocRef);
-    try {
-      return remoteLoginLoader.load(webDavConfigDocRef);
-    } catch (BeanLoadException exc) {
-      throw new ConfigurationException("illegal WebDAV config doc: " + webDavConfigDocRef, exc);
-    }
+    LOGGER.debug("getConfiguredRemoteLogin - {}", webDavConfigDocRef);
+    return remoteLoginCache.get(webDavConfigDocRef, () -> {
+      LOGGER.info("getConfiguredRemoteLogin - loading {}", webDavConfigDocRef);
+      try {
+        return remoteLoginLoader.load(webDavConfigDocRef);
+      } catch (BeanLoadException exc) {
+        throw new ConfigurationException("illegal WebDAV config doc: " + webDavConfigDocRef,
+            exc);
+      }
+    });
   }
 
   private DocumentReference getDefaultConfigDocRef() {
@@ -110,79 +247,349 @@ public class SardineAdapter implements WebDavService, Initializable {
   public SardineConnection connect(RemoteLogin remoteLogin) throws DavConnectionException,
       MalformedURLException {
     URL baseUrl = new URL(remoteLogin.getUrl());
-    return new SardineConnection(getSardine(remoteLogin), baseUrl);
+    if (getCircuitBreaker().isOpen(baseUrl.getAuthority())) {
+      throw new DavCircuitOpenException(baseUrl.getAuthority());
+    }
+    DavOperationStats stats = metrics.getOperationStats("connect", baseUrl.getAuthority());
+    long startTime = System.nanoTime();
+    String outcome = DavOperationStats.OUTCOME_IO_ERROR;
+    try {
+      SardineConnection connection = new SardineConnection(leaseSardine(remoteLogin), baseUrl);
+      outcome = DavOperationStats.OUTCOME_SUCCESS;
+      return connection;
+    } finally {
+      stats.record(System.nanoTime() - startTime, outcome);
+    }
+  }
+
+  @Override
+  public AsyncWebDavConnection connectAsync() throws DavConnectionException,
+      MalformedURLException, ConfigurationException {
+    return connectAsync(getConfiguredRemoteLogin());
+  }
+
+  @Override
+  public AsyncWebDavConnection connectAsync(RemoteLogin remoteLogin)
+      throws DavConnectionException, MalformedURLException {
+    DavAsyncExecutor executor = getAsyncExecutor();
+    return new AsyncSardineConnection(connect(remoteLogin), executor,
+        executor.getDefaultTimeoutMillis());
   }
 
   /**
-   * Currently we instance Sardine once per request. It could be safely used in a multithreaded
-   * environment since it uses the org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager.
-   * See <a href="https://github.com/lookfirst/sardine/wiki/UsageGuide#threading">Sardine Docu</a>.
+   * Sardine instances are pooled node-wide per remote login and share one connection manager.
+   * They can safely be used in a multithreaded environment, see
+   * <a href="https://github.com/lookfirst/sardine/wiki/UsageGuide#threading">Sardine Docu</a>.
+   * The returned client has to be given back with {@link PooledSardine#release()}, it mustn't be
+   * used afterwards since the pool may shut it down.
    */
-  public Sardine getSardine(RemoteLogin remoteLogin) throws DavConnectionException {
+  PooledSardine leaseSardine(final RemoteLogin remoteLogin) throws DavConnectionException {
     checkNotNull(remoteLogin);
-    String key = getSardineExecutionContextKey(remoteLogin);
-    Sardine sardine = (Sardine) execution.getContext().getProperty(key);
-    if ((sardine == null) || !isConnected(sardine, remoteLogin)) {
-      execution.getContext().setProperty(key, sardine = newSecureSardineInstance(remoteLogin));
+    SardinePool pool = getSardinePool();
+    String key = getSardinePoolKey(remoteLogin);
+    PooledSardine client = pool.lease(key, () -> newSecureSardineInstance(pool, remoteLogin));
+    if (client.isHealthy(pool.getHealthCheckTtlMillis())) {
+      LOGGER.trace("leaseSardine - returning healthy instance [{}]", client.hashCode());
+    } else if (isConnected(client.getSardine(), remoteLogin)) {
+      LOGGER.trace("leaseSardine - returning probed instance [{}]", client.hashCode());
+      client.markHealthy();
     } else {
-      LOGGER.trace("getSardine - returning cached instance [{}]", sardine.hashCode());
+      client.release();
+      pool.invalidate(key, client);
+      client = pool.lease(key, () -> newSecureSardineInstance(pool, remoteLogin));
     }
-    return sardine;
+    return client;
   }
 
-  String getSardineExecutionContextKey(RemoteLogin remoteLogin) {
-    return EC_KEY + "|" + Objects.hash(remoteLogin.getUrl(), remoteLogin.getUsername());
+  String getSardinePoolKey(RemoteLogin remoteLogin) {
+    return SardinePool.getKey(remoteLogin);
   }
 
-  private Sardine newSecureSardineInstance(final RemoteLogin remoteLogin)
-      throws DavConnectionException {
+  SardinePool getSardinePool() throws DavConnectionException {
+    SardinePool pool = sardinePool;
+    if (pool == null) {
+      synchronized (this) {
+        if ((pool = sardinePool) == null) {
+          sardinePool = pool = newSardinePool();
+          metrics.registerPool(getClass().getSimpleName(), pool);
+        }
+      }
+    }
+    return pool;
+  }
+
+  DavContentCache getContentCache() throws DavConnectionException {
+    DavContentCache cache = contentCache;
+    if (cache == null) {
+      synchronized (this) {
+        if ((cache = contentCache) == null) {
+          contentCache = cache = newContentCache();
+        }
+      }
+    }
+    return cache;
+  }
+
+  /**
+   * @return hit, miss and revalidation counts of the content cache
+   */
+  public Map<String, Long> getContentCacheStats() throws DavConnectionException {
+    return getContentCache().getStats();
+  }
+
+  DavMetadataCache getMetadataCache() {
+    DavMetadataCache cache = metadataCache;
+    if (cache == null) {
+      synchronized (this) {
+        if ((cache = metadataCache) == null) {
+          metadataCache = cache = new DavMetadataCache(
+              nodeCfgSrc.getProperty(DavMetadataCache.CFG_TTL, DavMetadataCache.DEFAULT_TTL),
+              nodeCfgSrc.getProperty(DavMetadataCache.CFG_MAX_ENTRIES,
+                  DavMetadataCache.DEFAULT_MAX_ENTRIES));
+        }
+      }
+    }
+    return cache;
+  }
+
+  DavCircuitBreaker getCircuitBreaker() {
+    DavCircuitBreaker breaker = circuitBreaker;
+    if (breaker == null) {
+      synchronized (this) {
+        if ((breaker = circuitBreaker) == null) {
+          circuitBreaker = breaker = new DavCircuitBreaker(
+              nodeCfgSrc.getProperty(DavCircuitBreaker.CFG_FAILURE_THRESHOLD,
+                  DavCircuitBreaker.DEFAULT_FAILURE_THRESHOLD),
+              nodeCfgSrc.getProperty(DavCircuitBreaker.CFG_OPEN, DavCircuitBreaker.DEFAULT_OPEN));
+        }
+      }
+    }
+    return breaker;
+  }
+
+  DavZipWriter getZipWriter() {
+    return new DavZipWriter(getBatchExecutor(),
+        nodeCfgSrc.getProperty(DavZipWriter.CFG_PREFETCH, DavZipWriter.DEFAULT_PREFETCH),
+        nodeCfgSrc.getProperty(DavZipWriter.CFG_READ_AHEAD, DavZipWriter.DEFAULT_READ_AHEAD));
+  }
+
+  DavContentDigests getContentDigests() {
+    DavContentDigests digests = contentDigests;
+    if (digests == null) {
+      synchronized (this) {
+        if ((digests = contentDigests) == null) {
+          contentDigests = digests = new DavContentDigests(nodeCfgSrc.getProperty(
+              DavContentDigests.CFG_MAX_RECORDS, DavContentDigests.DEFAULT_MAX_RECORDS));
+        }
+      }
+    }
+    return digests;
+  }
+
+  DavRetryPolicy getRetryPolicy() {
+    DavRetryPolicy policy = retryPolicy;
+    if (policy == null) {
+      synchronized (this) {
+        if ((policy = retryPolicy) == null) {
+          retryPolicy = policy = new DavRetryPolicy(
+              nodeCfgSrc.getProperty(DavRetryPolicy.CFG_MAX_ATTEMPTS,
+                  DavRetryPolicy.DEFAULT_MAX_ATTEMPTS),
+              nodeCfgSrc.getProperty(DavRetryPolicy.CFG_BUDGET, DavRetryPolicy.DEFAULT_BUDGET),
+              nodeCfgSrc.getProperty(DavRetryPolicy.CFG_BASE_DELAY,
+                  DavRetryPolicy.DEFAULT_BASE_DELAY),
+              nodeCfgSrc.getProperty(DavRetryPolicy.CFG_MAX_DELAY,
+                  DavRetryPolicy.DEFAULT_MAX_DELAY));
+        }
+      }
+    }
+    return policy;
+  }
+
+  DavChangeSnapshots getChangeSnapshots() {
+    DavChangeSnapshots snapshots = changeSnapshots;
+    if (snapshots == null) {
+      synchronized (this) {
+        if ((snapshots = changeSnapshots) == null) {
+          changeSnapshots = snapshots = new DavChangeSnapshots(
+              nodeCfgSrc.getProperty(DavChangeSnapshots.CFG_MAX_SNAPSHOTS,
+                  DavChangeSnapshots.DEFAULT_MAX_SNAPSHOTS),
+              nodeCfgSrc.getProperty(DavChangeSnapshots.CFG_TTL, DavChangeSnapshots.DEFAULT_TTL));
+        }
+      }
+    }
+    return snapshots;
+  }
+
+  DavAsyncExecutor getAsyncExecutor() {
+    DavAsyncExecutor executor = asyncExecutor;
+    if (executor == null) {
+      synchronized (this) {
+        if ((executor = asyncExecutor) == null) {
+          asyncExecutor = executor = new DavAsyncExecutor(
+              nodeCfgSrc.getProperty(DavAsyncExecutor.CFG_THREADS,
+                  DavAsyncExecutor.DEFAULT_THREADS),
+              nodeCfgSrc.getProperty(DavAsyncExecutor.CFG_QUEUE_SIZE,
+                  DavAsyncExecutor.DEFAULT_QUEUE_SIZE),
+              nodeCfgSrc.getProperty(DavAsyncExecutor.CFG_TIMEOUT,
+                  DavAsyncExecutor.DEFAULT_TIMEOUT));
+        }
+      }
+    }
+    return executor;
+  }
+
+  /**
+   * bounded executor running the batch operations of all connections with the configured
+   * parallelism
+   */
+  ExecutorService getBatchExecutor() {
+    ExecutorService executor = batchExecutor;
+    if (executor == null) {
+      synchronized (this) {
+        if ((executor = batchExecutor) == null) {
+          int parallelism = getBatchParallelism();
+          ThreadPoolExecutor threadPool = new ThreadPoolExecutor(parallelism, parallelism, 60,
+              TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new ThreadFactoryBuilder()
+                  .setNameFormat("webdav-batch-%d").setDaemon(true).build());
+          threadPool.allowCoreThreadTimeOut(true);
+          batchExecutor = executor = threadPool;
+        }
+      }
+    }
+    return executor;
+  }
+
+  int getBatchParallelism() {
+    return Math.max(1, nodeCfgSrc.getProperty(CFG_BATCH_PARALLELISM, DEFAULT_BATCH_PARALLELISM));
+  }
+
+  private DavContentCache newContentCache() throws DavConnectionException {
+    String diskDir = nodeCfgSrc.getProperty(DavContentCache.CFG_DISK_DIR, "");
     try {
-      final SSLContext sslCtx = SSLContexts.custom().loadTrustMaterial(getTrustStoreUrl(), null,
+      return new DavContentCache(
+          nodeCfgSrc.getProperty(DavContentCache.CFG_MAX_BYTES, DavContentCache.DEFAULT_MAX_BYTES),
+          nodeCfgSrc.getProperty(DavContentCache.CFG_MAX_ENTRY_BYTES,
+              DavContentCache.DEFAULT_MAX_ENTRY_BYTES),
+          !diskDir.isEmpty() ? Paths.get(diskDir) : null,
+          nodeCfgSrc.getProperty(DavContentCache.CFG_DISK_MAX_BYTES,
+              DavContentCache.DEFAULT_DISK_MAX_BYTES));
+    } catch (IOException exc) {
+      throw new DavConnectionException("content cache instantiation failed", exc);
+    }
+  }
+
+  private SardinePool newSardinePool() throws DavConnectionException {
+    try {
+      return new SardinePool(getSSLContext(getTrustStoreUrl()),
+          nodeCfgSrc.getProperty(SardinePool.CFG_MAX_TOTAL, SardinePool.DEFAULT_MAX_TOTAL),
+          nodeCfgSrc.getProperty(SardinePool.CFG_MAX_PER_ROUTE, SardinePool.DEFAULT_MAX_PER_ROUTE),
+          nodeCfgSrc.getProperty(SardinePool.CFG_MAX_CLIENTS, SardinePool.DEFAULT_MAX_CLIENTS),
+          nodeCfgSrc.getProperty(SardinePool.CFG_IDLE_TIMEOUT, SardinePool.DEFAULT_IDLE_TIMEOUT),
+          nodeCfgSrc.getProperty(SardinePool.CFG_HEALTH_CHECK_TTL,
+              SardinePool.DEFAULT_HEALTH_CHECK_TTL));
+    } catch (IOException | GeneralSecurityException exc) {
+      throw new DavConnectionException("sardine pool instantiation failed", exc);
+    }
+  }
+
+  /**
+   * the SSLContext is cached per truststore location, thus the keystore is parsed only once
+   */
+  private SSLContext getSSLContext(URL trustStoreUrl) throws IOException,
+      GeneralSecurityException {
+    String key = (trustStoreUrl != null) ? trustStoreUrl.toExternalForm() : "";
+    SSLContext sslCtx = sslContexts.get(key);
+    if (sslCtx == null) {
+      LOGGER.info("getSSLContext - loading truststore [{}]", trustStoreUrl);
+      sslCtx = SSLContexts.custom().loadTrustMaterial(trustStoreUrl, null,
           new TrustSelfSignedStrategy()).build();
-      Sardine sardine = new SardineImpl(remoteLogin.getUsername(), remoteLogin.getPassword()) {
-
-        @Override
-        protected ConnectionSocketFactory createDefaultSecureSocketFactory() {
-          return new SSLConnectionSocketFactory(sslCtx);
-        }
-      };
-      // PE not needed because of following exists check already handles intial authentication
-      sardine.disablePreemptiveAuthentication();
-      sardine.enableCompression();
-      if (isConnected(sardine, remoteLogin)) {
-        LOGGER.debug("newSecureSardineInstance - [{}] for [{}]", sardine.hashCode(), remoteLogin);
-        return sardine;
-      } else {
-        throw new DavConnectionException("illegal remote login definition: " + remoteLogin);
+      SSLContext existing = sslContexts.putIfAbsent(key, sslCtx);
+      sslCtx = (existing != null) ? existing : sslCtx;
+    }
+    return sslCtx;
+  }
+
+  private PooledSardine newSecureSardineInstance(SardinePool pool, RemoteLogin remoteLogin)
+      throws DavConnectionException {
+    SardineClient sardine = pool.newSardine(remoteLogin.getUsername(),
+        remoteLogin.getPassword(), RequestConfig.custom()
+            .setConnectTimeout(nodeCfgSrc.getProperty(CFG_CONNECT_TIMEOUT, DEFAULT_CONNECT_TIMEOUT))
+            .setSocketTimeout(nodeCfgSrc.getProperty(CFG_SOCKET_TIMEOUT, DEFAULT_SOCKET_TIMEOUT))
+            .setConnectionRequestTimeout(nodeCfgSrc.getProperty(CFG_LEASE_TIMEOUT,
+                DEFAULT_LEASE_TIMEOUT)));
+    // PE not needed because of following exists check already handles intial authentication
+    sardine.disablePreemptiveAuthentication();
+    sardine.enableCompression();
+    if (isConnected(sardine, remoteLogin)) {
+      LOGGER.debug("newSecureSardineInstance - [{}] for [{}]", sardine.hashCode(), remoteLogin);
+      PooledSardine client = new PooledSardine(getSardinePoolKey(remoteLogin), sardine);
+      client.markHealthy();
+      return client;
+    } else {
+      try {
+        sardine.shutdown();
+      } catch (IOException exc) {
+        LOGGER.debug("newSecureSardineInstance - shutdown failed", exc);
       }
-    } catch (IOException | GeneralSecurityException exc) {
-      throw new DavConnectionException("sardine instantiation failed for login: " + remoteLogin,
-          exc);
+      throw new DavConnectionException("illegal remote login definition: " + remoteLogin);
     }
   }
 
+  /**
+   * probes the remote login, a connection-level failure counts towards the circuit breaker of
+   * the host whereas any server response resets it
+   */
   private boolean isConnected(Sardine sardine, RemoteLogin remoteLogin) {
+    String host = getHost(remoteLogin);
     try {
-      return sardine.exists(remoteLogin.getUrl());
+      boolean exists = sardine.exists(remoteLogin.getUrl());
+      getCircuitBreaker().recordSuccess(host);
+      return exists;
+    } catch (SardineException sardineExc) {
+      getCircuitBreaker().recordSuccess(host);
+      return false;
     } catch (IOException ioe) {
+      getCircuitBreaker().recordFailure(host);
       return false;
     }
   }
 
+  private static String getHost(RemoteLogin remoteLogin) {
+    try {
+      return new URL(remoteLogin.getUrl()).getAuthority();
+    } catch (MalformedURLException exc) {
+      return remoteLogin.getUrl();
+    }
+  }
+
   private URL getTrustStoreUrl() throws IOException {
-    String cacertsPath = cfgSrc.getProperty("celements.security.cacerts");
+    String cacertsPath = nodeCfgSrc.getProperty("celements.security.cacerts");
     LOGGER.debug("getTrustStoreUrl - cacertsPath [{}]", cacertsPath);
     return context.getXWikiContext().getWiki().getResource(cacertsPath);
   }
 
   public class SardineConnection implements WebDavConnection {
 
-    private final Sardine sardine;
+    private final PooledSardine client;
+    private final SardineClient sardine;
     private final URL baseUrl;
+    private final DavContentCache contentCache;
+    private final DavMetadataCache metadataCache;
+    private final DavCircuitBreaker circuitBreaker;
+    private final DavRetryPolicy retryPolicy;
+    private final DavContentDigests contentDigests;
+    private final Set<String> knownDirs = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean closed = new AtomicBoolean(false);
 
-    SardineConnection(Sardine sardine, URL baseUrl) {
-      this.sardine = checkNotNull(sardine);
+    SardineConnection(PooledSardine client, URL baseUrl) throws DavConnectionException {
+      this.client = checkNotNull(client);
+      this.sardine = client.getSardine();
       this.baseUrl = checkNotNull(baseUrl);
+      this.contentCache = getContentCache();
+      this.metadataCache = getMetadataCache();
+      this.circuitBreaker = getCircuitBreaker();
+      this.retryPolicy = getRetryPolicy();
+      this.contentDigests = getContentDigests();
     }
 
     URL buildCompleteUrl(Path path) {
@@ -198,11 +605,141 @@ public class SardineAdapter implements WebDavService, Initializable {
       }
     }
 
+    /**
+     * executes the given request, records its latency and outcome in the {@link DavMetrics} of
+     * its HTTP method, e.g. 'PROPFIND', and passively tracks the health of the client. Any
+     * response of the server marks it healthy, whereas a connection-level failure forces a probe
+     * on the next lease. Connection-level failures and 5xx responses count towards the circuit
+     * breaker of the host, while it's open requests fail fast with an {@link IOException} caused
+     * by a {@link DavCircuitOpenException}. Local failures, e.g. an exhausted connection pool or
+     * an unreadable request body, don't count, nor do 501 and 505 responses, which tell a lacking
+     * capability of a healthy host.
+     */
+    private <T> T execute(String method, SardineRequest<T> request) throws IOException {
+      return execute(method, request, exc -> false);
+    }
+
+    /**
+     * like {@link #execute(String, SardineRequest)}, but a response matching the given refusal
+     * is the expected answer of a server lacking an optional capability and thus doesn't count
+     * towards the circuit breaker
+     */
+    private <T> T execute(String method, SardineRequest<T> request,
+        Predicate<SardineException> isRefusal) throws IOException {
+      String host = baseUrl.getAuthority();
+      try {
+        circuitBreaker.acquire(host);
+      } catch (DavCircuitOpenException exc) {
+        throw new IOException(exc.getMessage(), exc);
+      }
+      long startTime = System.nanoTime();
+      String outcome = DavOperationStats.OUTCOME_IO_ERROR;
+      Boolean failure = null; // null if the outcome tells nothing about the host
+      try {
+        T ret = request.execute();
+        client.markHealthy();
+        outcome = DavOperationStats.OUTCOME_SUCCESS;
+        failure = false;
+        return ret;
+      } catch (SardineException sardineExc) {
+        client.markHealthy();
+        outcome = Integer.toString(sardineExc.getStatusCode());
+        failure = isRefusal.test(sardineExc) ? null : isServerFailure(sardineExc.getStatusCode());
+        throw sardineExc;
+      } catch (DavRequestBodyStream.ReadException readExc) {
+        throw readExc.getCause();
+      } catch (IOException ioExc) {
+        if (isHostFailure(ioExc)) {
+          client.markUnhealthy();
+          failure = true;
+        }
+        throw ioExc;
+      } finally {
+        getStats(method).record(System.nanoTime() - startTime, outcome);
+        if (failure == null) {
+          circuitBreaker.recordInconclusive(host);
+        } else if (failure) {
+          circuitBreaker.recordFailure(host);
+        } else {
+          circuitBreaker.recordSuccess(host);
+        }
+      }
+    }
+
+    /**
+     * @return true for 5xx responses except 501 (Not Implemented) and 505 (HTTP Version Not
+     *         Supported), which are answers of a healthy host
+     */
+    private boolean isServerFailure(int status) {
+      return (status >= 500) && (status != 501) && (status != 505);
+    }
+
+    /**
+     * @return true for failures connecting to or communicating with the host, but not for an
+     *         exhausted local connection pool
+     */
+    private boolean isHostFailure(IOException exc) {
+      return !(exc instanceof ConnectionPoolTimeoutException) && ((exc instanceof SocketException)
+          || (exc instanceof SocketTimeoutException) || (exc instanceof ConnectTimeoutException)
+          || (exc instanceof NoHttpResponseException) || (exc instanceof UnknownHostException)
+          || (exc instanceof SSLException));
+    }
+
+    /**
+     * executes the given idempotent request like {@link #execute(String, SardineRequest)}, but
+     * retries transient failures according to the {@link DavRetryPolicy}. The request has to be
+     * replayable, e.g. a PUT has to send its full body again.
+     */
+    private <T> T executeWithRetry(String method, SardineRequest<T> request)
+        throws IOException {
+      long deadline = System.nanoTime() + retryPolicy.getBudgetNanos();
+      for (int attempt = 1;; attempt++) {
+        try {
+          return execute(method, request);
+        } catch (IOException exc) {
+          long delay = retryPolicy.getDelayMillis(attempt, exc);
+          if (!DavRetryPolicy.isRetryable(exc) || (attempt >= retryPolicy.getMaxAttempts())
+              || ((System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay)) > deadline)) {
+            throw exc;
+          }
+          getStats(method).recordRetry();
+          LOGGER.info("{} - retry {} in {}ms after: {}", method, attempt, delay,
+              exc.getMessage());
+          try {
+            Thread.sleep(delay);
+          } catch (InterruptedException iexc) {
+            Thread.currentThread().interrupt();
+            throw exc;
+          }
+        }
+      }
+    }
+
+    private DavOperationStats getStats(String method) {
+      return metrics.getRequestStats(method, baseUrl.getAuthority());
+    }
+
     @Override
     public List<DavResource> list(Path path) throws IOException, DavResourceAccessException {
+      return list(path, null);
+    }
+
+    @Override
+    public List<DavResource> list(Path path, Set<QName> props) throws IOException,
+        DavResourceAccessException {
       URL url = buildCompleteUrl(path);
+      String cacheKey = getCacheKey(url);
+      Optional<List<DavResource>> cached = metadataCache.getListing(cacheKey, props);
+      if (cached.isPresent()) {
+        LOGGER.debug("list - {} : {} cached", url, cached.get().size());
+        return cached.get();
+      }
       try {
-        List<DavResource> list = sardine.list(url.toExternalForm());
+        List<DavResource> list = executeWithRetry("PROPFIND", () -> (props != null)
+            ? sardine.propfind(url.toExternalForm(), 1, props)
+            : sardine.list(url.toExternalForm()));
+        metadataCache.putListing(cacheKey, props, list);
+        list.forEach(resource -> cacheResource(resource, props));
         LOGGER.info("list - {} : {}", url, list.size());
         return list;
       } catch (SardineException sardineExc) {
@@ -213,47 +750,439 @@ public class SardineAdapter implements WebDavService, Initializable {
 
     @Override
     public Optional<DavResource> get(Path path) throws IOException {
+      return get(path, null);
+    }
+
+    @Override
+    public Optional<DavResource> get(Path path, Set<QName> props) throws IOException {
       URL url = buildCompleteUrl(path);
-      Optional<DavResource> resource = Optional.empty();
-      if (sardine.exists(url.toExternalForm())) {
-        resource = Optional.ofNullable(getDavResource(url));
+      String cacheKey = getCacheKey(url);
+      Optional<Optional<DavResource>> cached = metadataCache.getResource(cacheKey, props);
+      if (cached.isPresent()) {
+        LOGGER.debug("get - {} : {} cached", url, cached.get());
+        return cached.get();
       }
+      Optional<DavResource> resource = getDavResource(url, props);
+      metadataCache.putResource(cacheKey, props, resource);
       LOGGER.info("get - {} : {}", url, resource);
       return resource;
     }
 
+    @Override
+    public void walk(Path path, int maxDepth, DavResourceVisitor visitor) throws IOException,
+        DavResourceAccessException {
+      checkArgument(maxDepth >= 0, "negative depth");
+      checkNotNull(visitor);
+      URL url = buildCompleteUrl(path);
+      try {
+        if (maxDepth <= 1) {
+          execute("PROPFIND", () -> {
+            propfind(url, Integer.toString(maxDepth), visitor);
+            return null;
+          });
+        } else if (!walkInfinite(url, maxDepth, visitor)) {
+          walkBreadthFirst(url, maxDepth, visitor);
+        }
+        LOGGER.debug("walk - {} with depth {}", url, maxDepth);
+      } catch (SardineException sardineExc) {
+        throwResourceAccessException(url, sardineExc);
+        throw sardineExc;
+      }
+    }
+
+    /**
+     * streams only the {@link WebDavService#MINIMAL_PROPS} of the resources, since the visited
+     * trees may be large and allprop makes servers compute expensive properties, e.g. quotas
+     */
+    private void propfind(URL url, String depth, DavResourceVisitor visitor) throws IOException {
+      sardine.propfind(url.toExternalForm(), depth, WebDavService.MINIMAL_PROPS, visitor);
+    }
+
+    /**
+     * @return false if the server refuses 'Depth: infinity', in which case nothing was visited
+     */
+    private boolean walkInfinite(URL url, int maxDepth, DavResourceVisitor visitor)
+        throws IOException {
+      if (!client.isInfiniteDepthRefused()) {
+        try {
+          execute("PROPFIND", () -> {
+            propfind(url, "infinity", resource -> {
+              if (getRelativeDepth(url, resource) <= maxDepth) {
+                visitor.visit(resource);
+              }
+            });
+            return null;
+          }, this::isInfiniteDepthRefusal);
+          return true;
+        } catch (SardineException sardineExc) {
+          if (!isInfiniteDepthRefusal(sardineExc)) {
+            throw sardineExc;
+          }
+          LOGGER.info("walk - 'Depth: infinity' refused with {} for {}",
+              sardineExc.getStatusCode(), url);
+          client.markInfiniteDepthRefused();
+        }
+      }
+      return false;
+    }
+
+    private boolean isInfiniteDepthRefusal(SardineException exc) {
+      return (exc.getStatusCode() == 400) || (exc.getStatusCode() == 403)
+          || (exc.getStatusCode() == 501);
+    }
+
+    /**
+     * PROPFINDs the directories of each level in parallel on the batch executor, only the urls
+     * of the next level's directories are kept in memory
+     */
+    private void walkBreadthFirst(URL url, int maxDepth, DavResourceVisitor visitor)
+        throws IOException {
+      Object visitorLock = new Object();
+      List<URL> level = Collections.singletonList(url);
+      for (int depth = 0; !level.isEmpty(); depth++) {
+        boolean visitSelf = (depth == 0);
+        boolean collectDirs = (depth + 1) < maxDepth;
+        List<URL> nextLevel = Collections.synchronizedList(new ArrayList<>());
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (URL dirUrl : level) {
+          tasks.add(() -> execute("PROPFIND", () -> {
+            propfind(dirUrl, "1", resource -> {
+              int relDepth = getRelativeDepth(dirUrl, resource);
+              if ((relDepth == 1) || ((relDepth == 0) && visitSelf)) {
+                if ((relDepth == 1) && collectDirs && resource.isDirectory()) {
+                  nextLevel.add(new URL(baseUrl, resource.getHref().toASCIIString()));
+                }
+                synchronized (visitorLock) {
+                  visitor.visit(resource);
+                }
+              }
+            });
+            return null;
+          }));
+        }
+        invokeAllOrThrow("walk", tasks);
+        level = nextLevel;
+      }
+    }
+
+    @Override
+    public DavChanges getChanges(Path dirPath, String syncToken) throws IOException,
+        DavResourceAccessException {
+      URL url = buildCompleteUrl(dirPath);
+      try {
+        DavChanges changes = null;
+        if (!client.isSyncCollectionRefused() && !DavChangeSnapshots.isLocalToken(syncToken)) {
+          changes = reportSyncCollection(url, syncToken);
+        }
+        if (changes == null) {
+          changes = diffListing(url, syncToken);
+        }
+        if (!changes.getChanged().isEmpty() || !changes.getRemoved().isEmpty()) {
+          metadataCache.invalidate(getCacheKey(url), null);
+          changes.getChanged().forEach(resource -> invalidateCaches(resource.getHref()));
+          changes.getRemoved().forEach(this::invalidateCaches);
+        }
+        LOGGER.info("getChanges - {} : {}", url, changes);
+        return changes;
+      } catch (SardineException sardineExc) {
+        throwResourceAccessException(url, sardineExc);
+        throw sardineExc;
+      }
+    }
+
+    /**
+     * @return null if the server doesn't support the sync-collection REPORT
+     */
     @Nullable
-    private DavResource getDavResource(URL url) throws IOException {
-      DavResource ret = null;
-      Path path = Paths.get(url.getPath());
-      for (DavResource resource : sardine.list(url.toExternalForm())) {
-        if (path.equals(Paths.get(resource.getPath()))) {
-          ret = resource;
+    private DavChanges reportSyncCollection(URL url, @Nullable String syncToken)
+        throws IOException {
+      try {
+        if (syncToken != null) {
+          try {
+            return toChanges(reportSyncCollection(url.toExternalForm(), syncToken), false);
+          } catch (SardineException sardineExc) {
+            if (!isSyncCollectionRefusal(sardineExc)) {
+              throw sardineExc;
+            }
+            LOGGER.info("getChanges - sync token refused for {}", url);
+          }
+        }
+        return toChanges(reportSyncCollection(url.toExternalForm(), ""), syncToken != null);
+      } catch (SardineException sardineExc) {
+        if (!isSyncCollectionRefusal(sardineExc)) {
+          throw sardineExc;
+        }
+        LOGGER.info("getChanges - sync-collection refused with {} for {}",
+            sardineExc.getStatusCode(), url);
+        client.markSyncCollectionRefused();
+        return null;
+      }
+    }
+
+    private SyncCollectionReport.Result reportSyncCollection(String url, String syncToken)
+        throws IOException {
+      return execute("REPORT", () -> sardine.report(url, 0, new SyncCollectionReport(syncToken,
+          SyncCollectionReport.SyncLevel.LEVEL_1, WebDavService.MINIMAL_PROPS, null)),
+          this::isSyncCollectionRefusal);
+    }
+
+    private boolean isSyncCollectionRefusal(SardineException exc) {
+      switch (exc.getStatusCode()) {
+        case 400: // Bad Request
+        case 403: // Forbidden, e.g. DAV:valid-sync-token precondition
+        case 405: // Method Not Allowed
+        case 409: // Conflict
+        case 501: // Not Implemented
+          return true;
+        default:
+          return false;
+      }
+    }
+
+    private DavChanges toChanges(SyncCollectionReport.Result result, boolean reset) {
+      List<DavResource> changed = new ArrayList<>();
+      List<URI> removed = new ArrayList<>();
+      for (DavResource resource : result.getResources()) {
+        if (resource.getStatusCode() == 404) {
+          removed.add(resource.getHref());
+        } else {
+          changed.add(resource);
+        }
+      }
+      return new DavChanges(nullToEmpty(result.getSyncToken()), changed, removed, reset);
+    }
+
+    /**
+     * computes the changes by comparing the current listing with the snapshot of the local token
+     */
+    private DavChanges diffListing(URL url, @Nullable String syncToken) throws IOException {
+      List<DavResource> listing = execute("PROPFIND", () -> sardine.propfind(
+          url.toExternalForm(), 1, WebDavService.MINIMAL_PROPS));
+      DavChangeSnapshots snapshots = getChangeSnapshots();
+      Map<String, String> previous = snapshots.get(syncToken);
+      Map<String, String> current = new HashMap<>();
+      List<DavResource> changed = new ArrayList<>();
+      for (DavResource resource : listing) {
+        if (getRelativeDepth(url, resource) == 1) {
+          String href = resource.getHref().toASCIIString();
+          String fingerprint = getFingerprint(resource);
+          current.put(href, fingerprint);
+          if ((previous == null) || !fingerprint.equals(previous.get(href))) {
+            changed.add(resource);
+          }
+        }
+      }
+      List<URI> removed = new ArrayList<>();
+      if (previous != null) {
+        previous.keySet().stream().filter(href -> !current.containsKey(href)).map(URI::create)
+            .forEach(removed::add);
+      }
+      metadataCache.putListing(getCacheKey(url), WebDavService.MINIMAL_PROPS, listing);
+      return new DavChanges(snapshots.put(current), changed, removed,
+          (syncToken != null) && (previous == null));
+    }
+
+    private String getFingerprint(DavResource resource) {
+      if (resource.getEtag() != null) {
+        return resource.getEtag();
+      }
+      return resource.getContentLength() + "|" + ((resource.getModified() != null)
+          ? resource.getModified().getTime()
+          : "");
+    }
+
+    private void invalidateCaches(URI href) {
+      try {
+        invalidateCaches(new URL(baseUrl, href.toASCIIString()));
+      } catch (MalformedURLException exc) {
+        LOGGER.debug("invalidateCaches - illegal href [{}]", href, exc);
+      }
+    }
+
+    private void invokeAllOrThrow(String name, List<Callable<Void>> tasks) throws IOException {
+      try {
+        for (Future<Void> future : getBatchExecutor().invokeAll(tasks)) {
+          future.get();
+        }
+      } catch (ExecutionException exc) {
+        Throwables.propagateIfPossible(exc.getCause(), IOException.class);
+        throw new IOException(exc.getCause());
+      } catch (InterruptedException exc) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException(name + " interrupted");
+      }
+    }
+
+    /**
+     * @return the depth of the resource relative to the given url or {@link Integer#MAX_VALUE}
+     *         if it isn't a descendant
+     */
+    private int getRelativeDepth(URL url, DavResource resource) {
+      String rootPath = DavMetadataCache.normalize(url.getPath());
+      String path = DavMetadataCache.normalize(resource.getHref().getRawPath());
+      String prefix = rootPath.endsWith("/") ? rootPath : (rootPath + "/");
+      if (path.equals(rootPath)) {
+        return 0;
+      } else if (path.startsWith(prefix)) {
+        return Splitter.on('/').splitToList(path.substring(prefix.length())).size();
+      }
+      return Integer.MAX_VALUE;
+    }
+
+    private void cacheResource(DavResource resource, Set<QName> props) {
+      try {
+        URL url = new URL(baseUrl, resource.getHref().toASCIIString());
+        metadataCache.putResource(getCacheKey(url), props, Optional.of(resource));
+      } catch (MalformedURLException exc) {
+        LOGGER.debug("cacheResource - illegal href [{}]", resource.getHref(), exc);
+      }
+    }
+
+    /**
+     * requests the properties of the resource itself with a single depth 0 PROPFIND, hence the
+     * cost doesn't depend on the size of a directory.
+     *
+     * @return empty if the resource doesn't exist
+     */
+    private Optional<DavResource> getDavResource(URL url) throws IOException {
+      return getDavResource(url, null);
+    }
+
+    private Optional<DavResource> getDavResource(URL url, @Nullable Set<QName> props)
+        throws IOException {
+      try {
+        List<DavResource> resources = executeWithRetry("PROPFIND", () -> (props != null)
+            ? sardine.propfind(url.toExternalForm(), 0, props)
+            : sardine.list(url.toExternalForm(), 0));
+        return resources.stream().findFirst();
+      } catch (SardineException sardineExc) {
+        if (sardineExc.getStatusCode() == 404) {
+          return Optional.empty();
         }
+        throw sardineExc;
       }
-      return ret;
     }
 
     @NotNull
     private DavResource expectDavFile(URL url) throws IOException, DavResourceAccessException {
-      DavResource resource = getDavResource(url);
-      if ((resource != null) && !resource.isDirectory()) {
-        return resource;
-      } else {
-        throw new DavFileNotExistsException(url);
-      }
+      return getDavResource(url).filter(resource -> !resource.isDirectory()).orElseThrow(
+          () -> new DavFileNotExistsException(url));
     }
 
+    /**
+     * loads the file with a single GET, a missing file is detected by the response status. Cached
+     * content is revalidated with a conditional GET and served from the cache if not modified.
+     * The cached content is shared node-wide, thus a copy is returned.
+     */
     @Override
     public byte[] load(Path filePath) throws IOException, DavResourceAccessException {
       URL url = buildCompleteUrl(filePath);
+      String cacheKey = getCacheKey(url);
+      Optional<DavContentCache.Entry> cached = contentCache.get(cacheKey);
+      if (cached.isPresent()) {
+        contentCache.recordRevalidation();
+      } else {
+        contentCache.recordMiss();
+      }
       try {
-        expectDavFile(url);
-        try (InputStream is = sardine.get(url.toExternalForm())) {
-          byte[] content = IOUtils.toByteArray(is);
-          LOGGER.info("load - {} : {} bytes", url, content.length);
-          return content;
+        DavContentCache.Entry entry = executeWithRetry("GET", () -> sardine.getConditional(
+            url.toExternalForm(), cached.map(c -> c.etag).orElse(null), cached.map(
+                c -> c.lastModified).orElse(null), response -> handleConditionalResponse(
+                    response, cached)));
+        if (entry == cached.orElse(null)) {
+          contentCache.recordHit();
+          LOGGER.info("load - {} : {} bytes not modified", url, entry.content.length);
+        } else {
+          contentCache.put(cacheKey, entry);
+          getStats("GET").recordBytes(entry.content.length);
+          LOGGER.info("load - {} : {} bytes", url, entry.content.length);
         }
+        return entry.content.clone();
+      } catch (SardineException sardineExc) {
+        contentCache.invalidate(cacheKey);
+        throwResourceAccessException(url, sardineExc);
+        throw sardineExc;
+      }
+    }
+
+    private DavContentCache.Entry handleConditionalResponse(HttpResponse response,
+        Optional<DavContentCache.Entry> cached) throws IOException {
+      if (cached.isPresent()
+          && (response.getStatusLine().getStatusCode() == HttpStatus.SC_NOT_MODIFIED)) {
+        return cached.get();
+      }
+      new VoidResponseHandler().handleResponse(response);
+      return new DavContentCache.Entry(getHeaderValue(response, HttpHeaders.ETAG),
+          getHeaderValue(response, HttpHeaders.LAST_MODIFIED),
+          (response.getEntity() != null) ? EntityUtils.toByteArray(response.getEntity())
+              : new byte[0]);
+    }
+
+    @Nullable
+    private String getHeaderValue(HttpResponse response, String name) {
+      Header header = response.getFirstHeader(name);
+      return (header != null) ? header.getValue() : null;
+    }
+
+    private String getCacheKey(URL url) {
+      return client.getKey() + "|" + DavMetadataCache.normalize(url.toExternalForm());
+    }
+
+    @Nullable
+    private String getParentCacheKey(URL url) {
+      try {
+        return getCacheKey(new URL(new URL(DavMetadataCache.normalize(url.toExternalForm())),
+            "."));
+      } catch (MalformedURLException exc) {
+        return null;
+      }
+    }
+
+    /**
+     * invalidates the cached content and metadata of the resource as well as its parent listing
+     */
+    private void invalidateCaches(URL url) {
+      String cacheKey = getCacheKey(url);
+      contentCache.invalidate(cacheKey);
+      metadataCache.invalidate(cacheKey, getParentCacheKey(url));
+    }
+
+    @Override
+    public long load(Path filePath, OutputStream out) throws IOException,
+        DavResourceAccessException {
+      checkNotNull(out);
+      try (InputStream is = loadAsStream(filePath)) {
+        long count = IOUtils.copyLarge(is, out, new byte[STREAM_BUFFER_SIZE]);
+        getStats("GET").recordBytes(count);
+        LOGGER.info("load - {} : {} bytes streamed", buildCompleteUrl(filePath), count);
+        return count;
+      }
+    }
+
+    @Override
+    public InputStream loadAsStream(Path filePath) throws IOException,
+        DavResourceAccessException {
+      URL url = buildCompleteUrl(filePath);
+      try {
+        InputStream is = executeWithRetry("GET", () -> sardine.get(url.toExternalForm()));
+        LOGGER.debug("loadAsStream - {}", url);
+        return is;
+      } catch (SardineException sardineExc) {
+        throwResourceAccessException(url, sardineExc);
+        throw sardineExc;
+      }
+    }
+
+    @Override
+    public InputStream loadAsStream(Path filePath, long offset, long length) throws IOException,
+        DavResourceAccessException {
+      checkArgument(offset >= 0, "negative offset");
+      URL url = buildCompleteUrl(filePath);
+      try {
+        InputStream is = executeWithRetry("GET", () -> sardine.getRange(url.toExternalForm(),
+            offset, length));
+        LOGGER.debug("loadAsStream - {} : offset [{}], length [{}]", url, offset, length);
+        return is;
       } catch (SardineException sardineExc) {
         throwResourceAccessException(url, sardineExc);
         throw sardineExc;
@@ -265,12 +1194,8 @@ public class SardineAdapter implements WebDavService, Initializable {
         DavResourceAccessException {
       URL url = buildCompleteUrl(dirPath);
       try {
-        if (!sardine.exists(url.toExternalForm())) {
-          if (dirPath.getParent() != null) {
-            createDirectory(dirPath.getParent());
-          }
-          sardine.createDirectory(url.toExternalForm());
-          LOGGER.info("createDirectory - {}", url);
+        if (!knownDirs.contains(DavMetadataCache.normalize(url.toExternalForm()))) {
+          makeCollection(dirPath);
         }
       } catch (SardineException sardineExc) {
         throwResourceAccessException(url, sardineExc);
@@ -278,17 +1203,52 @@ public class SardineAdapter implements WebDavService, Initializable {
       }
     }
 
+    /**
+     * sends MKCOL optimistically for the deepest level first and walks up the path only if the
+     * server responds with '409 Conflict', i.e. a parent is missing. '405 Method Not Allowed'
+     * signals an already existing resource.
+     */
+    private void makeCollection(Path dirPath) throws IOException {
+      URL url = buildCompleteUrl(dirPath);
+      if (!knownDirs.contains(DavMetadataCache.normalize(url.toExternalForm()))) {
+        try {
+          mkcol(url);
+        } catch (SardineException sardineExc) {
+          if ((sardineExc.getStatusCode() != 409) || (dirPath.getParent() == null)) {
+            throw sardineExc;
+          }
+          makeCollection(dirPath.getParent());
+          mkcol(url);
+        }
+        for (Path path = dirPath; path != null; path = path.getParent()) {
+          knownDirs.add(DavMetadataCache.normalize(buildCompleteUrl(path).toExternalForm()));
+        }
+      }
+    }
+
+    private void mkcol(URL url) throws IOException {
+      try {
+        invalidateCaches(url);
+        executeWithRetry("MKCOL", () -> {
+          sardine.createDirectory(url.toExternalForm());
+          return null;
+        });
+        LOGGER.info("createDirectory - {}", url);
+      } catch (SardineException sardineExc) {
+        if (sardineExc.getStatusCode() != 405) {
+          throw sardineExc;
+        }
+        LOGGER.debug("createDirectory - already exists {}", url);
+      }
+    }
+
     @Override
     public void create(Path filePath, byte[] content) throws IOException,
         DavResourceAccessException {
       URL url = buildCompleteUrl(filePath);
       try {
-        if (!sardine.exists(url.toExternalForm())) {
-          sardine.put(url.toExternalForm(), content);
-          LOGGER.info("create - {}", url);
-        } else {
-          throw new DavResourceAlreadyExistsException(url);
-        }
+        putIfAbsent(url, new ByteArrayInputStream(content), content.length);
+        LOGGER.info("create - {}", url);
       } catch (SardineException sardineExc) {
         throwResourceAccessException(url, sardineExc);
         throw sardineExc;
@@ -301,7 +1261,12 @@ public class SardineAdapter implements WebDavService, Initializable {
       URL url = buildCompleteUrl(filePath);
       try {
         expectDavFile(url);
-        sardine.put(url.toExternalForm(), content);
+        invalidateCaches(url);
+        executeWithRetry("PUT", () -> {
+          sardine.put(url.toExternalForm(), content);
+          return null;
+        });
+        getStats("PUT").recordBytes(content.length);
         LOGGER.info("update - {}", url);
       } catch (SardineException sardineExc) {
         throwResourceAccessException(url, sardineExc);
@@ -314,7 +1279,12 @@ public class SardineAdapter implements WebDavService, Initializable {
         DavResourceAccessException {
       URL url = buildCompleteUrl(filePath);
       try {
-        sardine.put(url.toExternalForm(), content);
+        invalidateCaches(url);
+        executeWithRetry("PUT", () -> {
+          sardine.put(url.toExternalForm(), content);
+          return null;
+        });
+        getStats("PUT").recordBytes(content.length);
         LOGGER.info("createOrUpdate - {}", url);
       } catch (SardineException sardineExc) {
         throwResourceAccessException(url, sardineExc);
@@ -322,11 +1292,374 @@ public class SardineAdapter implements WebDavService, Initializable {
       }
     }
 
+    @Override
+    public void create(Path filePath, InputStream content, long contentLength)
+        throws IOException, DavResourceAccessException {
+      URL url = buildCompleteUrl(filePath);
+      try {
+        putIfAbsent(url, content, contentLength);
+        LOGGER.info("create - {} : {} bytes", url, contentLength);
+      } catch (SardineException sardineExc) {
+        throwResourceAccessException(url, sardineExc);
+        throw sardineExc;
+      }
+    }
+
+    @Override
+    public void update(Path filePath, InputStream content, long contentLength)
+        throws IOException, DavResourceAccessException {
+      URL url = buildCompleteUrl(filePath);
+      try {
+        expectDavFile(url);
+        put(url, content, contentLength);
+        LOGGER.info("update - {} : {} bytes", url, contentLength);
+      } catch (SardineException sardineExc) {
+        throwResourceAccessException(url, sardineExc);
+        throw sardineExc;
+      }
+    }
+
+    @Override
+    public void createOrUpdate(Path filePath, InputStream content, long contentLength)
+        throws IOException, DavResourceAccessException {
+      URL url = buildCompleteUrl(filePath);
+      try {
+        put(url, content, contentLength);
+        LOGGER.info("createOrUpdate - {} : {} bytes", url, contentLength);
+      } catch (SardineException sardineExc) {
+        throwResourceAccessException(url, sardineExc);
+        throw sardineExc;
+      }
+    }
+
+    /**
+     * compares the digest of the content with the remote 'oc:checksums' if provided, otherwise
+     * with the digest recorded for the current ETag by a previous upload of this node. The
+     * content is only transferred if they differ. Content uploaded with a single PUT carries an
+     * 'OC-Checksum' header, so servers supporting it can provide the checksum later on. The digest
+     * is recorded for the ETag of the PUT or the final MOVE of a chunked upload, nothing is
+     * recorded if the response lacks it.
+     */
+    @Override
+    public boolean createOrUpdateIfChanged(Path filePath, ByteSource content)
+        throws IOException, DavResourceAccessException {
+      URL url = buildCompleteUrl(filePath);
+      String cacheKey = getCacheKey(url);
+      long size = content.size();
+      String digest = content.hash(Hashing.sha1()).toString();
+      try {
+        DavResource remote = executeWithRetry("PROPFIND", () -> {
+          try {
+            List<DavResource> resources = sardine.propfind(url.toExternalForm(), 0,
+                CHECKSUM_PROPS);
+            return resources.isEmpty() ? null : resources.get(0);
+          } catch (SardineException sardineExc) {
+            if (sardineExc.getStatusCode() == 404) {
+              return null;
+            }
+            throw sardineExc;
+          }
+        });
+        if (isUnchanged(cacheKey, remote, size, digest)) {
+          getStats("PUT").recordBytesSkipped(size);
+          LOGGER.info("createOrUpdateIfChanged - {} : {} bytes unchanged", url, size);
+          return false;
+        }
+        Optional<ChunkedUpload> chunkedUpload = canUploadChunked(size)
+            ? openChunkedUpload(url, size, digest)
+            : Optional.empty();
+        String etag = chunkedUpload.isPresent()
+            ? uploadChunked(url, chunkedUpload.get(), content, size)
+            : putWithChecksum(url, content, size, digest);
+        if (etag != null) {
+          contentDigests.record(cacheKey, etag, digest);
+        }
+        LOGGER.info("createOrUpdateIfChanged - {} : {} bytes", url, size);
+        return true;
+      } catch (SardineException sardineExc) {
+        throwResourceAccessException(url, sardineExc);
+        throw sardineExc;
+      }
+    }
+
+    private boolean isUnchanged(String cacheKey, @Nullable DavResource remote, long size,
+        String digest) {
+      if ((remote == null) || remote.isDirectory() || ((remote.getContentLength() != null)
+          && (remote.getContentLength() != size))) {
+        return false;
+      }
+      String remoteDigest = DavContentDigests.parseChecksum(remote.getCustomPropsNS().get(
+          OC_CHECKSUMS), DavContentDigests.ALGORITHM);
+      if (remoteDigest != null) {
+        return remoteDigest.equalsIgnoreCase(digest);
+      }
+      return contentDigests.matches(cacheKey, remote.getEtag(), digest);
+    }
+
+    /**
+     * @return the ETag of the uploaded content, null if the server didn't provide one
+     */
+    @Nullable
+    private String putWithChecksum(URL url, ByteSource content, long size, String digest)
+        throws IOException {
+      invalidateCaches(url);
+      List<Header> headers = Arrays.asList(new BasicHeader(OC_CHECKSUM,
+          DavContentDigests.ALGORITHM + ":" + digest));
+      String etag = executeWithRetry("PUT", () -> {
+        try (InputStream is = new DavRequestBodyStream(content.openStream())) {
+          return sardine.put(url.toExternalForm(), new InputStreamEntity(is, size), headers,
+              this::getEtag);
+        }
+      });
+      getStats("PUT").recordBytes(size);
+      return etag;
+    }
+
+    /**
+     * uploads content larger than the configured chunk size in parts if the server supports
+     * Nextcloud/ownCloud chunking v2, otherwise with a single streamed PUT, which is retried like
+     * the parts since the content is replayable. The parts are
+     * uploaded in parallel into an upload collection identified by the destination, the size
+     * and the digest of the whole content. Thus uploading the same content again after an
+     * interruption only sends the missing parts, whereas other content never reuses them.
+     */
+    @Override
+    public void createOrUpdate(Path filePath, ByteSource content) throws IOException,
+        DavResourceAccessException {
+      URL url = buildCompleteUrl(filePath);
+      long size = content.size();
+      try {
+        Optional<ChunkedUpload> chunkedUpload = canUploadChunked(size)
+            ? openChunkedUpload(url, size, content.hash(Hashing.sha1()).toString())
+            : Optional.empty();
+        if (chunkedUpload.isPresent()) {
+          uploadChunked(url, chunkedUpload.get(), content, size);
+        } else {
+          invalidateCaches(url);
+          executeWithRetry("PUT", () -> {
+            try (InputStream is = new DavRequestBodyStream(content.openBufferedStream())) {
+              sardine.put(url.toExternalForm(), is, null, true, size);
+            }
+            return null;
+          });
+          getStats("PUT").recordBytes(size);
+          LOGGER.info("createOrUpdate - {} : {} bytes", url, size);
+        }
+      } catch (SardineException sardineExc) {
+        throwResourceAccessException(url, sardineExc);
+        throw sardineExc;
+      }
+    }
+
+    private long getUploadChunkSize() {
+      return Math.max(1, nodeCfgSrc.getProperty(CFG_UPLOAD_CHUNK_SIZE, DEFAULT_UPLOAD_CHUNK_SIZE));
+    }
+
+    /**
+     * @return the upload root of Nextcloud/ownCloud chunking v2 if the base url points into the
+     *         files of a user, e.g. '/remote.php/dav/files/{user}/'
+     */
+    private Optional<URL> getChunkedUploadsUrl() {
+      Matcher matcher = CHUNKED_UPLOAD_BASE.matcher(baseUrl.getPath());
+      if (matcher.matches()) {
+        try {
+          return Optional.of(new URL(baseUrl, matcher.group(1) + "/uploads/" + matcher.group(2)
+              + "/"));
+        } catch (MalformedURLException exc) {
+          LOGGER.debug("getChunkedUploadsUrl - illegal url", exc);
+        }
+      }
+      return Optional.empty();
+    }
+
+    /**
+     * @return true if content of the given size is uploaded in parts, unless the server refuses
+     *         to open the upload collection
+     */
+    private boolean canUploadChunked(long size) {
+      return (size > getUploadChunkSize()) && getChunkedUploadsUrl().isPresent()
+          && !client.isChunkedUploadRefused();
+    }
+
+    /**
+     * opens the upload collection, only to be called if {@link #canUploadChunked(long)}
+     *
+     * @param digest
+     *          the digest of the whole content
+     * @return the upload collection of the content, empty if the server refuses chunked uploads
+     */
+    private Optional<ChunkedUpload> openChunkedUpload(URL url, long size, String digest)
+        throws IOException {
+      URL uploadsUrl = getChunkedUploadsUrl().get();
+      // chunking v2 allows at most 10000 parts
+      long partSize = Math.max(getUploadChunkSize(), (size + MAX_UPLOAD_PARTS - 1)
+          / MAX_UPLOAD_PARTS);
+      URL transferUrl = new URL(uploadsUrl, "celements-" + Hashing.sha256().newHasher()
+          .putString(url.toExternalForm(), StandardCharsets.UTF_8).putLong(size)
+          .putString(digest, StandardCharsets.UTF_8).hash() + "/");
+      List<Header> headers = Arrays.asList(new BasicHeader(HttpHeaders.DESTINATION,
+          url.toExternalForm()), new BasicHeader(OC_TOTAL_LENGTH, Long.toString(size)));
+      Map<String, Long> uploadedParts = getUploadedParts(transferUrl);
+      if (uploadedParts == null) {
+        try {
+          executeWithRetry("MKCOL", () -> {
+            sardine.createDirectory(transferUrl.toExternalForm(), headers);
+            return null;
+          });
+        } catch (SardineException sardineExc) {
+          if ((sardineExc.getStatusCode() < 400) || (sardineExc.getStatusCode() >= 500)) {
+            throw sardineExc;
+          }
+          LOGGER.info("createOrUpdate - chunked upload refused by {}: {}", uploadsUrl,
+              sardineExc.getStatusCode());
+          client.markChunkedUploadRefused();
+          return Optional.empty();
+        }
+        uploadedParts = Collections.emptyMap();
+      }
+      return Optional.of(new ChunkedUpload(transferUrl, headers, partSize, uploadedParts));
+    }
+
+    /**
+     * uploads the parts missing in the upload collection and moves it to the destination
+     *
+     * @return the ETag of the uploaded content, null if the server didn't provide one
+     */
+    @Nullable
+    private String uploadChunked(URL url, ChunkedUpload upload, ByteSource content, long size)
+        throws IOException {
+      String transferUrl = upload.transferUrl.toExternalForm();
+      int partCount = (int) ((size + upload.partSize - 1) / upload.partSize);
+      List<Callable<Void>> tasks = new ArrayList<>();
+      for (int i = 0; i < partCount; i++) {
+        long offset = i * upload.partSize;
+        long length = Math.min(upload.partSize, size - offset);
+        String partName = String.format("%05d", i + 1);
+        if (!Long.valueOf(length).equals(upload.uploadedParts.get(partName))) {
+          ByteSource part = content.slice(offset, length);
+          tasks.add(() -> executeWithRetry("PUT", () -> {
+            try (InputStream is = new DavRequestBodyStream(part.openStream())) {
+              sardine.put(transferUrl + partName, new InputStreamEntity(is, length),
+                  upload.headers);
+            }
+            getStats("PUT").recordBytes(length);
+            return null;
+          }));
+        }
+      }
+      LOGGER.debug("createOrUpdate - {} : uploading {} of {} parts to {}", url, tasks.size(),
+          partCount, transferUrl);
+      invokeAllOrThrow("createOrUpdate", tasks);
+      invalidateCaches(url);
+      String etag = execute("MOVE", () -> sardine.move(transferUrl + ".file",
+          url.toExternalForm(), true, upload.headers, this::getEtag));
+      LOGGER.info("createOrUpdate - {} : {} bytes in {} parts, {} resumed", url, size,
+          partCount, partCount - tasks.size());
+      return etag;
+    }
+
+    /**
+     * response handler failing on error responses like the {@link VoidResponseHandler}
+     *
+     * @return the ETag of the response, null if the server didn't provide one
+     */
+    @Nullable
+    private String getEtag(HttpResponse response) throws IOException {
+      new VoidResponseHandler().handleResponse(response);
+      return getHeaderValue(response, HttpHeaders.ETAG);
+    }
+
+    /**
+     * @return the sizes of the parts uploaded already by name, null if the upload collection
+     *         doesn't exist
+     */
+    @Nullable
+    private Map<String, Long> getUploadedParts(URL transferUrl) throws IOException {
+      try {
+        Map<String, Long> parts = new HashMap<>();
+        for (DavResource resource : executeWithRetry("PROPFIND", () -> sardine.propfind(
+            transferUrl.toExternalForm(), 1, MINIMAL_PROPS))) {
+          if (!resource.isDirectory() && (resource.getContentLength() != null)) {
+            parts.put(resource.getName(), resource.getContentLength());
+          }
+        }
+        return parts;
+      } catch (SardineException sardineExc) {
+        if (sardineExc.getStatusCode() == 404) {
+          return null;
+        }
+        throw sardineExc;
+      }
+    }
+
+    /**
+     * sends a length-delimited PUT if the content length is known, otherwise a chunked one. The
+     * 'Expect: 100-continue' handshake avoids streaming the body when the request is rejected.
+     */
+    private void put(URL url, InputStream content, long contentLength)
+        throws IOException {
+      CountingInputStream is = new CountingInputStream(new DavRequestBodyStream(checkNotNull(
+          content)));
+      invalidateCaches(url);
+      try {
+        execute("PUT", () -> {
+          if (contentLength >= 0) {
+            sardine.put(url.toExternalForm(), is, null, true, contentLength);
+          } else {
+            sardine.put(url.toExternalForm(), is, null, true);
+          }
+          return null;
+        });
+      } finally {
+        getStats("PUT").recordBytes(is.getCount());
+      }
+    }
+
+    /**
+     * sends a single PUT with 'If-None-Match: *', thus the server only creates the resource if it
+     * doesn't exist yet and responds with '412 Precondition Failed' otherwise. It isn't retried,
+     * since a retry after a lost response would fail the precondition.
+     */
+    private void putIfAbsent(URL url, InputStream content, long contentLength)
+        throws IOException, DavResourceAccessException {
+      CountingInputStream is = new CountingInputStream(new DavRequestBodyStream(checkNotNull(
+          content)));
+      List<Header> headers = Arrays.asList(new BasicHeader(HttpHeaders.IF_NONE_MATCH, "*"),
+          new BasicHeader(HTTP.EXPECT_DIRECTIVE, HTTP.EXPECT_CONTINUE));
+      invalidateCaches(url);
+      try {
+        execute("PUT", () -> {
+          sardine.put(url.toExternalForm(), new InputStreamEntity(is, contentLength), headers);
+          return null;
+        });
+      } catch (SardineException sardineExc) {
+        if (sardineExc.getStatusCode() == 412) {
+          throw new DavResourceAlreadyExistsException(url);
+        }
+        throw sardineExc;
+      } finally {
+        getStats("PUT").recordBytes(is.getCount());
+      }
+    }
+
     @Override
     public void delete(Path path) throws IOException, DavResourceAccessException {
       URL url = buildCompleteUrl(path);
       try {
-        sardine.delete(url.toExternalForm());
+        invalidateTree(url);
+        AtomicInteger attempts = new AtomicInteger();
+        executeWithRetry("DELETE", () -> {
+          int attempt = attempts.incrementAndGet();
+          try {
+            sardine.delete(url.toExternalForm());
+          } catch (SardineException sardineExc) {
+            // a retried delete may find the resource already deleted by a previous attempt
+            if ((attempt == 1) || (sardineExc.getStatusCode() != 404)) {
+              throw sardineExc;
+            }
+          }
+          return null;
+        });
         LOGGER.info("delete - {}", url);
       } catch (SardineException sardineExc) {
         throwResourceAccessException(url, sardineExc);
@@ -334,13 +1667,240 @@ public class SardineAdapter implements WebDavService, Initializable {
       }
     }
 
+    @Override
+    public void copy(Path srcPath, Path dstPath, boolean overwrite) throws IOException,
+        DavResourceAccessException {
+      URL srcUrl = buildCompleteUrl(srcPath);
+      URL dstUrl = buildCompleteUrl(dstPath);
+      try {
+        invalidateTree(dstUrl);
+        execute("COPY", () -> {
+          sardine.copy(srcUrl.toExternalForm(), dstUrl.toExternalForm(), overwrite);
+          return null;
+        });
+        LOGGER.info("copy - {} to {}", srcUrl, dstUrl);
+      } catch (SardineException sardineExc) {
+        throwCopyOrMoveException(srcUrl, dstUrl, sardineExc);
+        throw sardineExc;
+      }
+    }
+
+    @Override
+    public void move(Path srcPath, Path dstPath, boolean overwrite) throws IOException,
+        DavResourceAccessException {
+      URL srcUrl = buildCompleteUrl(srcPath);
+      URL dstUrl = buildCompleteUrl(dstPath);
+      try {
+        invalidateTree(srcUrl);
+        invalidateTree(dstUrl);
+        execute("MOVE", () -> {
+          sardine.move(srcUrl.toExternalForm(), dstUrl.toExternalForm(), overwrite);
+          return null;
+        });
+        LOGGER.info("move - {} to {}", srcUrl, dstUrl);
+      } catch (SardineException sardineExc) {
+        throwCopyOrMoveException(srcUrl, dstUrl, sardineExc);
+        throw sardineExc;
+      }
+    }
+
+    /**
+     * '412 Precondition Failed' signals an existing destination without overwrite, whereas
+     * '409 Conflict' a missing destination parent
+     */
+    private void throwCopyOrMoveException(URL srcUrl, URL dstUrl, SardineException exc)
+        throws DavResourceAccessException {
+      if (exc.getStatusCode() == 412) {
+        throw new DavResourceAlreadyExistsException(dstUrl);
+      } else if (exc.getStatusCode() == 409) {
+        throwResourceAccessException(dstUrl, exc);
+      }
+      throwResourceAccessException(srcUrl, exc);
+    }
+
+    /**
+     * invalidates all cached state of the resource and its descendants
+     */
+    private void invalidateTree(URL url) {
+      invalidateCaches(url);
+      metadataCache.invalidateTree(getCacheKey(url), getParentCacheKey(url));
+      String dirKey = DavMetadataCache.normalize(url.toExternalForm());
+      knownDirs.removeIf(dir -> dir.equals(dirKey) || dir.startsWith(dirKey + "/"));
+    }
+
+    @Override
+    public int getBatchParallelism() {
+      return SardineAdapter.this.getBatchParallelism();
+    }
+
+    @Override
+    public DavBatchResult<Void> putAll(Map<Path, ByteSource> contents) {
+      return executeBatch("putAll", contents.keySet(), filePath -> {
+        ByteSource source = contents.get(filePath);
+        try (InputStream is = source.openStream()) {
+          createOrUpdate(filePath, is, source.sizeIfKnown().or(-1L));
+        }
+        return null;
+      });
+    }
+
+    @Override
+    public DavBatchResult<Void> deleteAll(Collection<Path> paths) {
+      return executeBatch("deleteAll", paths, path -> {
+        delete(path);
+        return null;
+      });
+    }
+
+    @Override
+    public DavBatchResult<byte[]> loadAll(Collection<Path> filePaths) {
+      return executeBatch("loadAll", filePaths, this::load);
+    }
+
+    @Override
+    public DavBatchResult<Long> zip(Path dirPath, OutputStream out) throws IOException,
+        DavResourceAccessException {
+      checkNotNull(out);
+      URL url = buildCompleteUrl(dirPath);
+      String rootPath = DavMetadataCache.normalize(getDecodedPath(url)) + "/";
+      List<DavZipWriter.Entry> entries = new ArrayList<>();
+      walk(dirPath, Integer.MAX_VALUE, resource -> {
+        String path = resource.getPath();
+        if (!resource.isDirectory() && path.startsWith(rootPath)) {
+          String name = path.substring(rootPath.length());
+          entries.add(newZipEntry(dirPath.resolve(name), name, resource));
+        }
+      });
+      LOGGER.info("zip - {} : {} files", url, entries.size());
+      return getZipWriter().write(entries, this::loadAsStream, out);
+    }
+
+    @Override
+    public DavBatchResult<Long> zip(Collection<Path> filePaths, OutputStream out)
+        throws IOException {
+      checkNotNull(out);
+      Map<Path, String> names = new LinkedHashMap<>();
+      List<Path> unsafePaths = new ArrayList<>();
+      for (Path filePath : filePaths) {
+        String name = filePath.normalize().toString().replaceFirst("^/+", "");
+        if (DavZipWriter.isSafeName(name)) {
+          names.put(filePath, name);
+        } else {
+          unsafePaths.add(filePath);
+        }
+      }
+      DavBatchResult<Optional<DavResource>> resources = executeBatch("zip", names.keySet(),
+          filePath -> get(filePath, MINIMAL_PROPS));
+      List<DavZipWriter.Entry> entries = new ArrayList<>();
+      resources.getResults().forEach((filePath, resource) -> {
+        if (resource.isPresent() && !resource.get().isDirectory()) {
+          entries.add(newZipEntry(filePath, names.get(filePath), resource.get()));
+        }
+      });
+      DavBatchResult<Long> result = getZipWriter().write(entries, this::loadAsStream, out);
+      unsafePaths.forEach(filePath -> result.addError(filePath, new ZipException(
+          "unsafe entry name: " + filePath)));
+      resources.getErrors().forEach(result::addError);
+      resources.getResults().forEach((filePath, resource) -> {
+        if (!resource.isPresent() || resource.get().isDirectory()) {
+          result.addError(filePath, new DavFileNotExistsException(buildCompleteUrl(filePath)));
+        }
+      });
+      return result;
+    }
+
+    private DavZipWriter.Entry newZipEntry(Path filePath, String name, DavResource resource) {
+      return new DavZipWriter.Entry(filePath, name, Optional.ofNullable(
+          resource.getContentLength()).orElse(-1L), resource.getContentType(), Optional
+              .ofNullable(resource.getModified()).map(Date::getTime).orElse(-1L));
+    }
+
+    private String getDecodedPath(URL url) {
+      try {
+        return url.toURI().getPath();
+      } catch (URISyntaxException exc) {
+        return url.getPath();
+      }
+    }
+
+    /**
+     * runs the operation for all paths on the batch executor and waits for completion. Failing
+     * items are reported in the result instead of aborting the batch.
+     */
+    private <T> DavBatchResult<T> executeBatch(String name, Collection<Path> paths,
+        BatchOperation<T> operation) {
+      List<Path> items = new ArrayList<>(new LinkedHashSet<>(paths));
+      List<Callable<T>> tasks = new ArrayList<>();
+      items.forEach(path -> tasks.add(() -> operation.execute(path)));
+      DavBatchResult<T> result = new DavBatchResult<>();
+      try {
+        List<Future<T>> futures = getBatchExecutor().invokeAll(tasks);
+        for (int i = 0; i < items.size(); i++) {
+          try {
+            result.addResult(items.get(i), futures.get(i).get());
+          } catch (ExecutionException exc) {
+            result.addError(items.get(i), (exc.getCause() instanceof Exception)
+                ? (Exception) exc.getCause()
+                : exc);
+          } catch (CancellationException exc) {
+            result.addError(items.get(i), exc);
+          }
+        }
+      } catch (InterruptedException exc) {
+        Thread.currentThread().interrupt();
+        items.forEach(path -> result.addError(path, new InterruptedIOException(name
+            + " interrupted")));
+      }
+      LOGGER.info("{} - {} items : {} failed", name, items.size(), result.getErrors().size());
+      return result;
+    }
+
+    /**
+     * gives the client back to the {@link SardinePool} instead of shutting it down
+     */
     @Override
     public void close() throws IOException {
-      sardine.shutdown();
+      if (closed.compareAndSet(false, true)) {
+        client.release();
+      }
+    }
+
+  }
+
+  @FunctionalInterface
+  interface BatchOperation<T> {
+
+    T execute(Path path) throws IOException, DavResourceAccessException;
+
+  }
+
+  /**
+   * the upload collection of a chunked upload with the parts uploaded already
+   */
+  private static class ChunkedUpload {
+
+    final URL transferUrl;
+    final List<Header> headers;
+    final long partSize;
+    final Map<String, Long> uploadedParts;
+
+    ChunkedUpload(URL transferUrl, List<Header> headers, long partSize,
+        Map<String, Long> uploadedParts) {
+      this.transferUrl = transferUrl;
+      this.headers = headers;
+      this.partSize = partSize;
+      this.uploadedParts = uploadedParts;
     }
 
   }
 
+  @FunctionalInterface
+  interface SardineRequest<T> {
+
+    T execute() throws IOException;
+
+  }
+
   /**
    * throws a {@link DavResourceAccessException} for specific HTTP status codes concerning errors
    * for the given path. A different path may not cause such errors. More general error codes
@@ -359,6 +1919,8 @@ public class SardineAdapter implements WebDavService, Initializable {
         throw new DavResourceAccessException("Conflict", url, exc);
       case 410: // Gone
         throw new DavResourceAccessException("Gone", url, exc);
+      case 416: // Range Not Satisfiable
+        throw new DavResourceAccessException("Range not satisfiable", url, exc);
       case 418: // I'm a teapot - happy April Fools' Day 2019 ;)
         throw new DavResourceAccessException("Teapot", url, exc);
     }
@@ -0,0 +1,223 @@
+package com.celements.webdav;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+import javax.xml.namespace.QName;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.HttpClientBuilder;
+
+import com.celements.webdav.WebDavService.DavResourceVisitor;
+import com.github.sardine.Sardine;
+import com.github.sardine.impl.SardineException;
+import com.github.sardine.impl.SardineImpl;
+import com.github.sardine.impl.handler.VoidResponseHandler;
+import com.github.sardine.impl.io.ContentLengthInputStream;
+import com.github.sardine.impl.io.HttpMethodReleaseInputStream;
+import com.github.sardine.impl.methods.HttpMkCol;
+import com.github.sardine.impl.methods.HttpMove;
+import com.github.sardine.impl.methods.HttpPropFind;
+import com.github.sardine.model.Prop;
+import com.github.sardine.model.Propfind;
+import com.github.sardine.util.SardineUtil;
+import com.google.common.base.Strings;
+
+/**
+ * {@link SardineImpl} providing the HTTP features not covered by the {@link Sardine} interface,
+ * e.g. ranged requests.
+ */
+class SardineClient extends SardineImpl {
+
+  SardineClient(HttpClientBuilder builder, String username, String password) {
+    super(builder, username, password);
+  }
+
+  /**
+   * executes the request, a failed response carrying a 'Retry-After' header is thrown as
+   * {@link RetryAfterException}. The request is aborted with the {@link DavAbortScope} it runs in.
+   */
+  @Override
+  public <T> T execute(HttpRequestBase request, ResponseHandler<T> responseHandler)
+      throws IOException {
+    DavAbortScope.track(request);
+    return super.execute(request, response -> {
+      try {
+        return responseHandler.handleResponse(response);
+      } catch (SardineException exc) {
+        throw withRetryAfter(exc, response);
+      }
+    });
+  }
+
+  private static SardineException withRetryAfter(SardineException exc, HttpResponse response) {
+    Header header = response.getFirstHeader(HttpHeaders.RETRY_AFTER);
+    long retryAfterMillis = (header != null) ? parseRetryAfter(header.getValue()) : -1;
+    if ((retryAfterMillis >= 0) && !(exc instanceof RetryAfterException)) {
+      return new RetryAfterException(exc, retryAfterMillis);
+    }
+    return exc;
+  }
+
+  /**
+   * @return the delay given in seconds or as HTTP date, -1 if unparsable
+   */
+  static long parseRetryAfter(@Nullable String value) {
+    value = Strings.nullToEmpty(value).trim();
+    try {
+      return TimeUnit.SECONDS.toMillis(Math.max(Long.parseLong(value), 0));
+    } catch (NumberFormatException nfe) {
+      Date date = DateUtils.parseDate(value);
+      return (date != null) ? Math.max(date.getTime() - System.currentTimeMillis(), 0) : -1;
+    }
+  }
+
+  @Override
+  public HttpResponse execute(HttpRequestBase request) throws IOException {
+    DavAbortScope.track(request);
+    return super.execute(request);
+  }
+
+  /**
+   * GETs the resource conditionally on the given validators. Besides successful responses the
+   * handler has to deal with '304 Not Modified'.
+   */
+  <T> T getConditional(String url, @Nullable String etag, @Nullable String lastModified,
+      ResponseHandler<T> handler) throws IOException {
+    HttpGet get = new HttpGet(url);
+    if (etag != null) {
+      get.addHeader(HttpHeaders.IF_NONE_MATCH, etag);
+    }
+    if (lastModified != null) {
+      get.addHeader(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+    }
+    return execute(get, handler);
+  }
+
+  /**
+   * GETs the given byte range of the resource. If the server ignores the Range header and responds
+   * with the whole content, the range is cut out on the client side.
+   *
+   * @param length
+   *          the number of bytes or -1 up to the end of the resource
+   */
+  @NotNull
+  InputStream getRange(String url, long offset, long length) throws IOException {
+    HttpGet get = new HttpGet(url);
+    get.addHeader(HttpHeaders.RANGE, "bytes=" + offset + "-"
+        + ((length >= 0) ? Long.toString((offset + length) - 1) : ""));
+    HttpResponse response = execute(get);
+    InputStream is;
+    try {
+      try {
+        new VoidResponseHandler().handleResponse(response);
+      } catch (SardineException exc) {
+        throw withRetryAfter(exc, response);
+      }
+      is = new ContentLengthInputStream(new HttpMethodReleaseInputStream(response),
+          response.getEntity().getContentLength());
+    } catch (IOException exc) {
+      get.abort();
+      throw exc;
+    }
+    if (response.getStatusLine().getStatusCode() != HttpStatus.SC_PARTIAL_CONTENT) {
+      try {
+        IOUtils.skipFully(is, offset);
+      } catch (IOException exc) {
+        is.close();
+        throw exc;
+      }
+      if (length >= 0) {
+        is = new BoundedInputStream(is, length);
+      }
+    }
+    return is;
+  }
+
+  /**
+   * MKCOLs the collection with additional headers, e.g. the 'Destination' of a chunked upload
+   */
+  void createDirectory(String url, List<Header> headers) throws IOException {
+    HttpMkCol mkcol = new HttpMkCol(url);
+    headers.forEach(mkcol::addHeader);
+    execute(mkcol, new VoidResponseHandler());
+  }
+
+  /**
+   * MOVEs the resource with additional headers, e.g. the 'OC-Total-Length' of a chunked upload
+   *
+   * @return the result of the response handler, e.g. the ETag of the moved resource
+   */
+  <T> T move(String srcUrl, String dstUrl, boolean overwrite, List<Header> headers,
+      ResponseHandler<T> responseHandler) throws IOException {
+    HttpMove move = new HttpMove(srcUrl, dstUrl, overwrite);
+    headers.forEach(move::addHeader);
+    return execute(move, responseHandler);
+  }
+
+  /**
+   * PROPFINDs the given properties with the given depth and streams the resources of the
+   * multistatus response to the visitor instead of building the complete list
+   *
+   * @param depth
+   *          '0', '1' or 'infinity'
+   * @param props
+   *          the properties to request, e.g. {@link WebDavService#MINIMAL_PROPS}
+   */
+  void propfind(String url, String depth, Set<QName> props, DavResourceVisitor visitor)
+      throws IOException {
+    HttpPropFind propFind = new HttpPropFind(url);
+    propFind.setDepth(depth);
+    Prop prop = new Prop();
+    props.forEach(name -> prop.getAny().add(SardineUtil.createElement(name)));
+    Propfind body = new Propfind();
+    body.setProp(prop);
+    propFind.setEntity(new StringEntity(SardineUtil.toXml(body), StandardCharsets.UTF_8));
+    execute(propFind, response -> {
+      new VoidResponseHandler().handleResponse(response);
+      try (InputStream is = response.getEntity().getContent()) {
+        DavMultistatusReader.read(is, visitor);
+      }
+      return null;
+    });
+  }
+
+  /**
+   * failed response, for which the server requested to wait before retrying
+   */
+  static class RetryAfterException extends SardineException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long retryAfterMillis;
+
+    RetryAfterException(SardineException cause, long retryAfterMillis) {
+      super(cause.getMessage(), cause.getStatusCode(), cause.getResponsePhrase());
+      initCause(cause);
+      this.retryAfterMillis = retryAfterMillis;
+    }
+
+    long getRetryAfterMillis() {
+      return retryAfterMillis;
+    }
+
+  }
+
+}
@@ -0,0 +1,180 @@
+package com.celements.webdav;
+
+import static com.google.common.base.Preconditions.*;
+import static java.nio.charset.StandardCharsets.*;
+
+import java.net.ProxySelector;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLContext;
+import javax.validation.constraints.NotNull;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.client.IdleConnectionEvictor;
+import org.apache.http.impl.conn.DefaultSchemePortResolver;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.conn.SystemDefaultRoutePlanner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.celements.auth.RemoteLogin;
+import com.celements.webdav.exception.DavConnectionException;
+import com.github.sardine.Sardine;
+import com.github.sardine.Version;
+import com.github.sardine.impl.SardineRedirectStrategy;
+import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Node-wide registry of {@link Sardine} clients keyed by remote login url and credentials. All
+ * clients share one {@link PoolingHttpClientConnectionManager}, thus keep-alive connections and
+ * TLS sessions survive across requests. The number of clients is bounded and clients idle for
+ * longer than the configured timeout are evicted.
+ */
+class SardinePool {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(SardinePool.class);
+
+  static final String CFG_PREFIX = "webdav.pool.";
+  static final String CFG_MAX_TOTAL = CFG_PREFIX + "maxTotal";
+  static final String CFG_MAX_PER_ROUTE = CFG_PREFIX + "maxPerRoute";
+  static final String CFG_MAX_CLIENTS = CFG_PREFIX + "maxClients";
+  static final String CFG_IDLE_TIMEOUT = CFG_PREFIX + "idleTimeoutSec";
+  static final String CFG_HEALTH_CHECK_TTL = CFG_PREFIX + "healthCheckTtlSec";
+
+  static final int DEFAULT_MAX_TOTAL = 50;
+  static final int DEFAULT_MAX_PER_ROUTE = 10;
+  static final int DEFAULT_MAX_CLIENTS = 100;
+  static final int DEFAULT_IDLE_TIMEOUT = 300;
+  static final int DEFAULT_HEALTH_CHECK_TTL = 30;
+
+  private final PoolingHttpClientConnectionManager connManager;
+  private final IdleConnectionEvictor idleConnEvictor;
+  private final Cache<String, PooledSardine> clients;
+  private final long healthCheckTtlMillis;
+
+  SardinePool(SSLContext sslCtx, int maxTotal, int maxPerRoute, int maxClients,
+      int idleTimeoutSec, int healthCheckTtlSec) {
+    Registry<ConnectionSocketFactory> schemeRegistry = RegistryBuilder
+        .<ConnectionSocketFactory>create()
+        .register("http", PlainConnectionSocketFactory.getSocketFactory())
+        .register("https", new SSLConnectionSocketFactory(checkNotNull(sslCtx)))
+        .build();
+    connManager = new PoolingHttpClientConnectionManager(schemeRegistry);
+    connManager.setMaxTotal(maxTotal);
+    connManager.setDefaultMaxPerRoute(maxPerRoute);
+    idleConnEvictor = new IdleConnectionEvictor(connManager, idleTimeoutSec, TimeUnit.SECONDS);
+    idleConnEvictor.start();
+    clients = CacheBuilder.newBuilder()
+        .maximumSize(maxClients)
+        .expireAfterAccess(idleTimeoutSec, TimeUnit.SECONDS)
+        .removalListener((RemovalNotification<String, PooledSardine> notification) -> {
+          LOGGER.debug("evicted [{}] for [{}]", notification.getKey(), notification.getCause());
+          notification.getValue().retire();
+        }).build();
+    healthCheckTtlMillis = TimeUnit.SECONDS.toMillis(healthCheckTtlSec);
+    LOGGER.info("SardinePool - maxTotal [{}], maxPerRoute [{}], maxClients [{}], "
+        + "idleTimeout [{}], healthCheckTtl [{}]", maxTotal, maxPerRoute, maxClients,
+        idleTimeoutSec, healthCheckTtlSec);
+  }
+
+  /**
+   * the key contains a hash of the credentials, thus a changed password leads to a new client
+   * while the one with outdated credentials is evicted once idle
+   */
+  static String getKey(RemoteLogin remoteLogin) {
+    return remoteLogin.getUrl() + "|" + remoteLogin.getUsername() + "|" + Hashing.sha256()
+        .newHasher().putString(Strings.nullToEmpty(remoteLogin.getUsername()), UTF_8)
+        .putByte((byte) 0).putString(Strings.nullToEmpty(remoteLogin.getPassword()), UTF_8)
+        .hash().toString().substring(0, 16);
+  }
+
+  /**
+   * leases the pooled client for the given key or creates one with the provided loader. The
+   * returned client has to be given back with {@link PooledSardine#release()}.
+   */
+  @NotNull
+  PooledSardine lease(String key, Callable<PooledSardine> loader)
+      throws DavConnectionException {
+    while (true) {
+      PooledSardine client;
+      try {
+        client = clients.get(key, loader);
+      } catch (ExecutionException | UncheckedExecutionException exc) {
+        if (exc.getCause() instanceof DavConnectionException) {
+          throw (DavConnectionException) exc.getCause();
+        }
+        throw new DavConnectionException("failed to create client for: " + key, exc.getCause());
+      }
+      if (client.lease()) {
+        return client;
+      }
+      invalidate(key, client);
+    }
+  }
+
+  /**
+   * removes the given client from the pool, it's shut down once all leases are released
+   */
+  void invalidate(String key, PooledSardine client) {
+    clients.asMap().remove(key, client);
+    client.retire();
+  }
+
+  /**
+   * creates a new client using the shared connection manager, configured like Sardine's defaults
+   * apart from the given request config, e.g. defining the timeouts. Shutting down the client
+   * doesn't affect the shared connection manager.
+   */
+  @NotNull
+  SardineClient newSardine(String username, String password, RequestConfig.Builder config) {
+    HttpClientBuilder builder = HttpClients.custom()
+        .setUserAgent("Sardine/" + Optional.ofNullable(Version.getSpecification()).orElse(
+            "UNAVAILABLE"))
+        .setRedirectStrategy(new SardineRedirectStrategy())
+        .setDefaultRequestConfig(config.setExpectContinueEnabled(false).build())
+        .setRoutePlanner(new SystemDefaultRoutePlanner(DefaultSchemePortResolver.INSTANCE,
+            ProxySelector.getDefault()))
+        .setConnectionManager(connManager)
+        .setConnectionManagerShared(true);
+    return new SardineClient(builder, username, password);
+  }
+
+  /**
+   * within this time to live after a successful response no connection probe is needed
+   */
+  long getHealthCheckTtlMillis() {
+    return healthCheckTtlMillis;
+  }
+
+  PoolingHttpClientConnectionManager getConnectionManager() {
+    return connManager;
+  }
+
+  long size() {
+    return clients.size();
+  }
+
+  void shutdown() {
+    clients.invalidateAll();
+    clients.cleanUp();
+    idleConnEvictor.shutdown();
+    connManager.shutdown();
+    LOGGER.info("SardinePool - shutdown");
+  }
+
+}
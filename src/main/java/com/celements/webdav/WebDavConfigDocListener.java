@@ -0,0 +1,52 @@
+package com.celements.webdav;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xwiki.bridge.event.DocumentCreatedEvent;
+import org.xwiki.bridge.event.DocumentDeletedEvent;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.annotation.Requirement;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.event.Event;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+
+/**
+ * Invalidates the {@link RemoteLoginCache} entry of a changed WebDAV config doc.
+ */
+@Component(WebDavConfigDocListener.NAME)
+public class WebDavConfigDocListener implements EventListener {
+
+  public static final String NAME = "WebDavConfigDocListener";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(WebDavConfigDocListener.class);
+
+  @Requirement
+  private RemoteLoginCache remoteLoginCache;
+
+  @Override
+  public String getName() {
+    return NAME;
+  }
+
+  @Override
+  public List<Event> getEvents() {
+    return Arrays.<Event>asList(new DocumentCreatedEvent(), new DocumentUpdatedEvent(),
+        new DocumentDeletedEvent());
+  }
+
+  @Override
+  public void onEvent(Event event, Object source, Object data) {
+    if (source instanceof XWikiDocument) {
+      XWikiDocument doc = (XWikiDocument) source;
+      LOGGER.trace("onEvent - {} for {}", event.getClass().getSimpleName(),
+          doc.getDocumentReference());
+      remoteLoginCache.invalidate(doc.getDocumentReference());
+    }
+  }
+
+}
@@ -0,0 +1,42 @@
+package com.celements.webdav;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.annotation.Requirement;
+import org.xwiki.context.Execution;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.event.ActionExecutionEvent;
+import org.xwiki.observation.event.Event;
+
+/**
+ * Releases the {@link RequestConnections} once the action of the request has been executed.
+ * Contexts not ending with an executed action have to release them with a
+ * {@link WebDavScriptSession}.
+ */
+@Component(WebDavRequestListener.NAME)
+public class WebDavRequestListener implements EventListener {
+
+  public static final String NAME = "WebDavRequestListener";
+
+  @Requirement
+  private Execution execution;
+
+  @Override
+  public String getName() {
+    return NAME;
+  }
+
+  @Override
+  public List<Event> getEvents() {
+    return Arrays.<Event>asList(new ActionExecutionEvent());
+  }
+
+  @Override
+  public void onEvent(Event event, Object source, Object data) {
+    RequestConnections.release(execution.getContext());
+    RequestConnections.detectLeaks();
+  }
+
+}
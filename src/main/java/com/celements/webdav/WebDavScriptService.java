@@ -2,20 +2,33 @@ package com.celements.webdav;
 
 import static com.google.common.base.Strings.*;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
+
+import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.configuration.ConfigurationException;
+import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.annotation.Requirement;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.script.service.ScriptService;
 
@@ -23,9 +36,18 @@ import com.celements.model.context.ModelContext;
 import com.celements.rights.access.EAccessLevel;
 import com.celements.rights.access.IRightsAccessFacadeRole;
 import com.celements.webdav.WebDavService.WebDavConnection;
+import com.celements.webdav.exception.DavConnectionException;
 import com.celements.webdav.exception.DavResourceAccessException;
+import com.celements.webdav.sync.DavSyncReport;
+import com.celements.webdav.sync.WebDavSyncService;
 import com.github.sardine.DavResource;
+import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteSource;
+import com.xpn.xwiki.XWikiException;
 import com.xpn.xwiki.api.Attachment;
+import com.xpn.xwiki.api.Document;
+import com.xpn.xwiki.web.XWikiRequest;
 import com.xpn.xwiki.web.XWikiResponse;
 
 @Component("webdav")
@@ -36,18 +58,24 @@ public class WebDavScriptService implements ScriptService {
   @Requirement
   private WebDavService webDavService;
 
+  @Requirement
+  private WebDavSyncService syncService;
+
   @Requirement
   private IRightsAccessFacadeRole rightsAccess;
 
   @Requirement
   private ModelContext context;
 
+  @Requirement
+  private Execution execution;
+
   public List<DavResource> list(String path) {
     List<DavResource> list = new ArrayList<>();
     if (checkWebDavRights() && !isNullOrEmpty(path)) {
       try {
-        WebDavConnection webDav = webDavService.connect();
-        list = webDav.list(Paths.get(path));
+        WebDavConnection webDav = getConnection();
+        list = webDav.list(Paths.get(path), WebDavService.MINIMAL_PROPS);
       } catch (DavResourceAccessException exc) {
         LOGGER.info("list - inaccessible resource [{}]", path, exc);
       } catch (Exception exc) {
@@ -61,8 +89,8 @@ public class WebDavScriptService implements ScriptService {
     DavResource resource = null;
     if (checkWebDavRights() && !isNullOrEmpty(path)) {
       try {
-        WebDavConnection webDav = webDavService.connect();
-        resource = webDav.get(Paths.get(path)).orElse(null);
+        WebDavConnection webDav = getConnection();
+        resource = webDav.get(Paths.get(path), WebDavService.MINIMAL_PROPS).orElse(null);
       } catch (Exception exc) {
         LOGGER.warn("get - failed for path [{}]", path, exc);
       }
@@ -74,7 +102,7 @@ public class WebDavScriptService implements ScriptService {
     String content = "";
     if (checkWebDavRights() && !isNullOrEmpty(filePath)) {
       try {
-        WebDavConnection webDav = webDavService.connect();
+        WebDavConnection webDav = getConnection();
         content = new String(webDav.load(Paths.get(filePath)));
       } catch (DavResourceAccessException exc) {
         LOGGER.info("load - inaccessible resource [{}]", filePath, exc);
@@ -88,19 +116,37 @@ public class WebDavScriptService implements ScriptService {
   public void download(String filePath) {
     if (checkWebDavRights() && !isNullOrEmpty(filePath)) {
       try {
-        WebDavConnection webDav = webDavService.connect();
+        WebDavConnection webDav = getConnection();
         Path path = Paths.get(filePath);
-        Optional<DavResource> resource = webDav.get(path);
+        Optional<DavResource> resource = webDav.get(path, WebDavService.MINIMAL_PROPS);
         if (resource.isPresent() && !resource.get().isDirectory()) {
-          byte[] content = webDav.load(path);
           XWikiResponse response = context.getResponse().get();
+          Optional<String> etag = getEtag(resource.get());
+          Date modified = Optional.ofNullable(resource.get().getModified()).orElseGet(Date::new);
+          if (etag.isPresent()) {
+            response.setHeader("ETag", etag.get());
+          }
+          response.setDateHeader("Last-Modified", modified.getTime());
+          if (isNotModified(etag, modified)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            LOGGER.debug("download - not modified [{}]", filePath);
+            return;
+          }
           response.setCharacterEncoding("");
           response.setContentType(resource.get().getContentType());
           response.addHeader("Content-disposition", "inline; filename=\"" + URLEncoder.encode(
               resource.get().getName(), StandardCharsets.UTF_8.name()) + "\"");
-          response.setDateHeader("Last-Modified", new Date().getTime());
-          response.setContentLength(content.length);
-          response.getOutputStream().write(content);
+          response.setHeader("Accept-Ranges", "bytes");
+          Optional<ByteRange> range = getRequestedRange(resource.get());
+          if (range.isPresent()) {
+            writeRange(webDav, path, range.get(), response);
+          } else {
+            Long contentLength = resource.get().getContentLength();
+            if ((contentLength != null) && (contentLength >= 0)) {
+              response.setHeader("Content-Length", Long.toString(contentLength));
+            }
+            webDav.load(path, response.getOutputStream());
+          }
         }
       } catch (DavResourceAccessException exc) {
         LOGGER.info("download - inaccessible resource [{}]", filePath, exc);
@@ -110,10 +156,136 @@ public class WebDavScriptService implements ScriptService {
     }
   }
 
+  /**
+   * streams the directory with all its descendants as ZIP archive to the response
+   */
+  public void downloadZip(String dirPath) {
+    if (checkWebDavRights() && !isNullOrEmpty(dirPath)) {
+      try {
+        WebDavConnection webDav = getConnection();
+        Path path = Paths.get(dirPath);
+        Optional<DavResource> resource = webDav.get(path, WebDavService.MINIMAL_PROPS);
+        if (resource.isPresent() && resource.get().isDirectory()) {
+          DavBatchResult<Long> result = webDav.zip(path, prepareZipResponse(
+              resource.get().getName()));
+          LOGGER.debug("downloadZip - [{}] : {}", dirPath, result);
+        }
+      } catch (DavResourceAccessException exc) {
+        LOGGER.info("downloadZip - inaccessible resource [{}]", dirPath, exc);
+      } catch (Exception exc) {
+        LOGGER.warn("downloadZip - failed for path [{}]", dirPath, exc);
+      }
+    }
+  }
+
+  /**
+   * streams the given files as ZIP archive with the given name to the response
+   */
+  public void downloadZip(List<String> filePaths, String zipName) {
+    if (checkWebDavRights() && (filePaths != null) && !isNullOrEmpty(zipName)) {
+      try {
+        WebDavConnection webDav = getConnection();
+        DavBatchResult<Long> result = webDav.zip(toPaths(filePaths), prepareZipResponse(
+            zipName));
+        LOGGER.debug("downloadZip - {} : {}", filePaths, result);
+      } catch (Exception exc) {
+        LOGGER.warn("downloadZip - failed for paths {}", filePaths, exc);
+      }
+    }
+  }
+
+  private OutputStream prepareZipResponse(String name) throws IOException {
+    XWikiResponse response = context.getResponse().get();
+    String fileName = name.toLowerCase().endsWith(".zip") ? name : (name + ".zip");
+    response.setContentType("application/zip");
+    response.addHeader("Content-disposition", "attachment; filename=\"" + URLEncoder.encode(
+        fileName, StandardCharsets.UTF_8.name()) + "\"");
+    return response.getOutputStream();
+  }
+
+  /**
+   * @return the quoted entity tag of the resource, as required for HTTP headers
+   */
+  private Optional<String> getEtag(DavResource resource) {
+    String etag = emptyToNull(resource.getEtag());
+    if ((etag != null) && !etag.startsWith("\"") && !etag.startsWith("W/")) {
+      etag = "\"" + etag + "\"";
+    }
+    return Optional.ofNullable(etag);
+  }
+
+  /**
+   * evaluates the If-None-Match and If-Modified-Since preconditions of the client request, see
+   * <a href="https://tools.ietf.org/html/rfc7232#section-6">RFC 7232</a>
+   */
+  private boolean isNotModified(Optional<String> etag, Date modified) {
+    if (context.getRequest().isPresent()) {
+      XWikiRequest request = context.getRequest().get();
+      String ifNoneMatch = request.getHeader("If-None-Match");
+      if (ifNoneMatch != null) {
+        // '*' matches any existing resource, whether it has an ETag or not
+        return Splitter.on(',').trimResults().splitToList(ifNoneMatch).stream().anyMatch(
+            tag -> "*".equals(tag) || (etag.isPresent() && weakEtag(tag).equals(weakEtag(
+                etag.get()))));
+      }
+      try {
+        long ifModifiedSince = request.getDateHeader("If-Modified-Since");
+        // HTTP dates have a precision of seconds
+        return (ifModifiedSince >= 0) && ((modified.getTime() / 1000) <= (ifModifiedSince / 1000));
+      } catch (IllegalArgumentException exc) {
+        LOGGER.debug("isNotModified - illegal If-Modified-Since", exc);
+      }
+    }
+    return false;
+  }
+
+  private static String weakEtag(String etag) {
+    return etag.startsWith("W/") ? etag.substring(2) : etag;
+  }
+
+  /**
+   * @return the range requested by the client, if any and the If-Range precondition holds
+   */
+  private Optional<ByteRange> getRequestedRange(DavResource resource) {
+    Long contentLength = resource.getContentLength();
+    if (context.getRequest().isPresent() && (contentLength != null)) {
+      XWikiRequest request = context.getRequest().get();
+      String ifRange = request.getHeader("If-Range");
+      if ((ifRange == null) || isStrongMatch(ifRange, getEtag(resource))) {
+        return ByteRange.parse(request.getHeader("Range"), contentLength);
+      }
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * If-Range requires the strong comparison, weak entity tags never match, see
+   * <a href="https://tools.ietf.org/html/rfc7233#section-3.2">RFC 7233</a>
+   */
+  private static boolean isStrongMatch(String ifRange, Optional<String> etag) {
+    return etag.isPresent() && !ifRange.startsWith("W/") && !etag.get().startsWith("W/")
+        && ifRange.equals(etag.get());
+  }
+
+  private void writeRange(WebDavConnection webDav, Path path, ByteRange range,
+      XWikiResponse response) throws IOException, DavResourceAccessException {
+    response.setHeader("Content-Range", range.getContentRange());
+    if (range.isSatisfiable()) {
+      response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+      response.setHeader("Content-Length", Long.toString(range.getLength()));
+      try (InputStream is = webDav.loadAsStream(path, range.getOffset(), range.getLength())) {
+        IOUtils.copyLarge(is, response.getOutputStream(),
+            new byte[SardineAdapter.STREAM_BUFFER_SIZE]);
+      }
+    } else {
+      response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+    }
+  }
+
   public boolean createDirectory(String dirPath) {
     if (checkWebDavRights() && !isNullOrEmpty(dirPath)) {
       try {
-        WebDavConnection webDav = webDavService.connect();
+        WebDavConnection webDav = getConnection();
         webDav.createDirectory(Paths.get(dirPath));
         return true;
       } catch (DavResourceAccessException exc) {
@@ -128,8 +300,10 @@ public class WebDavScriptService implements ScriptService {
   public boolean create(String filePath, Attachment attachment) {
     if (checkWebDavRights() && !isNullOrEmpty(filePath) && (attachment != null)) {
       try {
-        WebDavConnection webDav = webDavService.connect();
-        webDav.create(Paths.get(filePath), attachment.getContent());
+        WebDavConnection webDav = getConnection();
+        try (InputStream content = attachment.getContentInputStream()) {
+          webDav.create(Paths.get(filePath), content, attachment.getFilesize());
+        }
         return true;
       } catch (DavResourceAccessException exc) {
         LOGGER.info("create - inaccessible resource [{}]", filePath, exc);
@@ -143,8 +317,10 @@ public class WebDavScriptService implements ScriptService {
   public boolean update(String filePath, Attachment attachment) {
     if (checkWebDavRights() && !isNullOrEmpty(filePath) && (attachment != null)) {
       try {
-        WebDavConnection webDav = webDavService.connect();
-        webDav.update(Paths.get(filePath), attachment.getContent());
+        WebDavConnection webDav = getConnection();
+        try (InputStream content = attachment.getContentInputStream()) {
+          webDav.update(Paths.get(filePath), content, attachment.getFilesize());
+        }
         return true;
       } catch (DavResourceAccessException exc) {
         LOGGER.info("update - inaccessible resource [{}]", filePath, exc);
@@ -158,8 +334,10 @@ public class WebDavScriptService implements ScriptService {
   public boolean createOrUpdate(String filePath, Attachment attachment) {
     if (checkWebDavRights() && !isNullOrEmpty(filePath) && (attachment != null)) {
       try {
-        WebDavConnection webDav = webDavService.connect();
-        webDav.createOrUpdate(Paths.get(filePath), attachment.getContent());
+        WebDavConnection webDav = getConnection();
+        try (InputStream content = attachment.getContentInputStream()) {
+          webDav.createOrUpdate(Paths.get(filePath), content, attachment.getFilesize());
+        }
         return true;
       } catch (DavResourceAccessException exc) {
         LOGGER.info("createOrUpdate - inaccessible resource [{}]", filePath, exc);
@@ -173,7 +351,7 @@ public class WebDavScriptService implements ScriptService {
   public boolean delete(final String path) {
     if (checkWebDavRights() && !isNullOrEmpty(path)) {
       try {
-        WebDavConnection webDav = webDavService.connect();
+        WebDavConnection webDav = getConnection();
         webDav.delete(Paths.get(path));
         return true;
       } catch (DavResourceAccessException exc) {
@@ -185,13 +363,150 @@ public class WebDavScriptService implements ScriptService {
     return false;
   }
 
+  public boolean copy(String srcPath, String dstPath, boolean overwrite) {
+    if (checkWebDavRights() && !isNullOrEmpty(srcPath) && !isNullOrEmpty(dstPath)) {
+      try {
+        WebDavConnection webDav = getConnection();
+        webDav.copy(Paths.get(srcPath), Paths.get(dstPath), overwrite);
+        return true;
+      } catch (DavResourceAccessException exc) {
+        LOGGER.info("copy - inaccessible resource [{}] to [{}]", srcPath, dstPath, exc);
+      } catch (Exception exc) {
+        LOGGER.warn("copy - failed for path [{}] to [{}]", srcPath, dstPath, exc);
+      }
+    }
+    return false;
+  }
+
+  public boolean move(String srcPath, String dstPath, boolean overwrite) {
+    if (checkWebDavRights() && !isNullOrEmpty(srcPath) && !isNullOrEmpty(dstPath)) {
+      try {
+        WebDavConnection webDav = getConnection();
+        webDav.move(Paths.get(srcPath), Paths.get(dstPath), overwrite);
+        return true;
+      } catch (DavResourceAccessException exc) {
+        LOGGER.info("move - inaccessible resource [{}] to [{}]", srcPath, dstPath, exc);
+      } catch (Exception exc) {
+        LOGGER.warn("move - failed for path [{}] to [{}]", srcPath, dstPath, exc);
+      }
+    }
+    return false;
+  }
+
+  /**
+   * mirrors the attachments of the document into the given directory, see
+   * {@link WebDavSyncService}
+   */
+  public DavSyncReport syncAttachments(Document doc, String dirPath) {
+    if (checkWebDavRights() && (doc != null) && !isNullOrEmpty(dirPath)) {
+      try {
+        WebDavConnection webDav = getConnection();
+        Map<String, ByteSource> files = new LinkedHashMap<>();
+        Map<String, String> versions = new HashMap<>();
+        for (Attachment attachment : doc.getAttachmentList()) {
+          files.put(attachment.getFilename(), lazyContent(attachment));
+          versions.put(attachment.getFilename(), getVersion(attachment));
+        }
+        return syncService.sync(webDav, files, versions, Paths.get(dirPath));
+      } catch (DavResourceAccessException exc) {
+        LOGGER.info("syncAttachments - inaccessible resource [{}]", dirPath, exc);
+      } catch (Exception exc) {
+        LOGGER.warn("syncAttachments - failed for path [{}]", dirPath, exc);
+      }
+    }
+    return null;
+  }
+
+  public DavBatchResult<String> loadAllAsString(List<String> filePaths) {
+    DavBatchResult<String> result = new DavBatchResult<>();
+    if (checkWebDavRights() && (filePaths != null)) {
+      try {
+        WebDavConnection webDav = getConnection();
+        result = webDav.loadAll(toPaths(filePaths)).transform(String::new);
+      } catch (Exception exc) {
+        LOGGER.warn("loadAll - failed for paths {}", filePaths, exc);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * uploads the attachments in windows of the batch parallelism, so only the contents of one
+   * window are held in memory at once
+   */
+  public DavBatchResult<Void> createOrUpdateAll(Map<String, Attachment> attachments) {
+    DavBatchResult<Void> result = new DavBatchResult<>();
+    if (checkWebDavRights() && (attachments != null)) {
+      try {
+        WebDavConnection webDav = getConnection();
+        List<Map.Entry<String, Attachment>> entries = attachments.entrySet().stream().filter(
+            entry -> !isNullOrEmpty(entry.getKey()) && (entry.getValue() != null)).collect(
+                Collectors.toList());
+        for (List<Map.Entry<String, Attachment>> window : Lists.partition(entries,
+            webDav.getBatchParallelism())) {
+          Map<Path, ByteSource> contents = new LinkedHashMap<>();
+          for (Map.Entry<String, Attachment> attachment : window) {
+            Path filePath = Paths.get(attachment.getKey());
+            try {
+              contents.put(filePath, loadContent(attachment.getValue()));
+            } catch (IOException exc) {
+              result.addError(filePath, exc);
+            }
+          }
+          result.addAll(webDav.putAll(contents));
+        }
+      } catch (Exception exc) {
+        LOGGER.warn("createOrUpdateAll - failed for paths {}", attachments.keySet(), exc);
+      }
+    }
+    return result;
+  }
+
+  public DavBatchResult<Void> deleteAll(List<String> paths) {
+    DavBatchResult<Void> result = new DavBatchResult<>();
+    if (checkWebDavRights() && (paths != null)) {
+      try {
+        WebDavConnection webDav = getConnection();
+        result = webDav.deleteAll(toPaths(paths));
+      } catch (Exception exc) {
+        LOGGER.warn("deleteAll - failed for paths {}", paths, exc);
+      }
+    }
+    return result;
+  }
+
+  private static List<Path> toPaths(List<String> paths) {
+    return paths.stream().filter(path -> !isNullOrEmpty(path)).map(Paths::get).collect(
+        Collectors.toList());
+  }
+
   public WebDavConnection debug() throws Exception {
     if (rightsAccess.isSuperAdmin()) {
-      return webDavService.connect();
+      return getConnection();
     }
     return null;
   }
 
+  /**
+   * starts an explicit session for multi-step scripts. All calls share the connection of the
+   * request anyway, closing the session releases it before the request ends.
+   */
+  public WebDavScriptSession session() {
+    ExecutionContext execContext = execution.getContext();
+    RequestConnections.get(execContext);
+    return new WebDavScriptSession(execContext);
+  }
+
+  /**
+   * @return the connection shared by all calls within the current request, it's released at
+   *         the end of the request
+   */
+  private WebDavConnection getConnection() throws DavConnectionException, MalformedURLException,
+      ConfigurationException {
+    return RequestConnections.get(execution.getContext()).getConnection(webDavService,
+        webDavService.getConfiguredRemoteLogin());
+  }
+
   private boolean checkWebDavRights() {
     try {
       DocumentReference cfgDocRef = webDavService.getConfiguredRemoteLogin().getDocumentReference();
@@ -202,4 +517,40 @@ public class WebDavScriptService implements ScriptService {
     }
   }
 
+  /**
+   * loads the attachment content on the calling thread, since the store access relies on the
+   * context of the request and thus mustn't happen on the threads of the batch executor
+   */
+  /**
+   * the content is loaded only once the sync finds the attachment changed
+   */
+  private static ByteSource lazyContent(Attachment attachment) {
+    return new ByteSource() {
+
+      @Override
+      public InputStream openStream() throws IOException {
+        return loadContent(attachment).openStream();
+      }
+    };
+  }
+
+  private static String getVersion(Attachment attachment) {
+    Date date = attachment.getDate();
+    return attachment.getVersion() + ";" + ((date != null) ? date.getTime() : "") + ";"
+        + attachment.getFilesize();
+  }
+
+  private static ByteSource loadContent(Attachment attachment) throws IOException {
+    byte[] content;
+    try {
+      content = attachment.getContent();
+    } catch (XWikiException exc) {
+      throw new IOException("failed loading content of " + attachment.getFilename(), exc);
+    }
+    if (content == null) {
+      throw new IOException("failed loading content of " + attachment.getFilename());
+    }
+    return ByteSource.wrap(content);
+  }
+
 }
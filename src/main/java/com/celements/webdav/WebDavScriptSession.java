@@ -0,0 +1,38 @@
+package com.celements.webdav;
+
+import org.xwiki.context.ExecutionContext;
+
+/**
+ * Scope of the connections shared by the {@link WebDavScriptService} calls. A request is such a
+ * scope by itself, an explicit session allows to release the connections earlier, e.g. within
+ * a long running script or outside of a request.
+ */
+public class WebDavScriptSession implements AutoCloseable {
+
+  private final ExecutionContext execContext;
+
+  WebDavScriptSession(ExecutionContext execContext) {
+    this.execContext = execContext;
+  }
+
+  /**
+   * @return the number of connections currently open in this session
+   */
+  public int getConnectionCount() {
+    return isOpen() ? RequestConnections.get(execContext).size() : 0;
+  }
+
+  public boolean isOpen() {
+    return (execContext != null) && (execContext.getProperty(
+        RequestConnections.EXEC_CONTEXT_KEY) != null);
+  }
+
+  /**
+   * releases the connections, later calls of the script service open new ones
+   */
+  @Override
+  public void close() {
+    RequestConnections.release(execContext);
+  }
+
+}
@@ -1,12 +1,25 @@
 package com.celements.webdav;
 
+import static com.github.sardine.util.SardineUtil.*;
+
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.nio.file.Path;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+import javax.annotation.Nullable;
 import javax.validation.constraints.NotNull;
+import javax.xml.namespace.QName;
 
 import org.apache.commons.configuration.ConfigurationException;
 import org.xwiki.component.annotation.ComponentRole;
@@ -14,11 +27,26 @@ import org.xwiki.component.annotation.ComponentRole;
 import com.celements.auth.RemoteLogin;
 import com.celements.webdav.exception.DavConnectionException;
 import com.celements.webdav.exception.DavResourceAccessException;
+import com.celements.webdav.exception.DavResourceAlreadyExistsException;
 import com.github.sardine.DavResource;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.ByteSource;
 
 @ComponentRole
 public interface WebDavService {
 
+  /**
+   * the properties commonly needed for listings: name, size, content type, modification date,
+   * etag and resource type
+   */
+  Set<QName> MINIMAL_PROPS = ImmutableSet.of(
+      new QName(DEFAULT_NAMESPACE_URI, "displayname", DEFAULT_NAMESPACE_PREFIX),
+      new QName(DEFAULT_NAMESPACE_URI, "getcontentlength", DEFAULT_NAMESPACE_PREFIX),
+      new QName(DEFAULT_NAMESPACE_URI, "getcontenttype", DEFAULT_NAMESPACE_PREFIX),
+      new QName(DEFAULT_NAMESPACE_URI, "getlastmodified", DEFAULT_NAMESPACE_PREFIX),
+      new QName(DEFAULT_NAMESPACE_URI, "getetag", DEFAULT_NAMESPACE_PREFIX),
+      new QName(DEFAULT_NAMESPACE_URI, "resourcetype", DEFAULT_NAMESPACE_PREFIX));
+
   @NotNull
   RemoteLogin getConfiguredRemoteLogin() throws ConfigurationException;
 
@@ -30,17 +58,106 @@ public interface WebDavService {
   WebDavConnection connect(@NotNull RemoteLogin remoteLogin) throws DavConnectionException,
       MalformedURLException;
 
+  /**
+   * connects for non-blocking callers, the calls are executed on a bounded node-wide executor
+   */
+  @NotNull
+  AsyncWebDavConnection connectAsync() throws DavConnectionException, MalformedURLException,
+      ConfigurationException;
+
+  @NotNull
+  AsyncWebDavConnection connectAsync(@NotNull RemoteLogin remoteLogin)
+      throws DavConnectionException, MalformedURLException;
+
+  @FunctionalInterface
+  interface DavResourceVisitor {
+
+    void visit(@NotNull DavResource resource) throws IOException;
+
+  }
+
   interface WebDavConnection extends AutoCloseable {
 
     @NotNull
     List<DavResource> list(@NotNull Path path) throws IOException, DavResourceAccessException;
 
+    /**
+     * lists the children requesting only the given properties instead of all
+     *
+     * @param props
+     *          the properties to request, e.g. {@link WebDavService#MINIMAL_PROPS}
+     */
+    @NotNull
+    List<DavResource> list(@NotNull Path path, @NotNull Set<QName> props) throws IOException,
+        DavResourceAccessException;
+
     @NotNull
     Optional<DavResource> get(@NotNull Path path) throws IOException;
 
+    /**
+     * gets the resource requesting only the given properties instead of all
+     *
+     * @param props
+     *          the properties to request, e.g. {@link WebDavService#MINIMAL_PROPS}
+     */
+    @NotNull
+    Optional<DavResource> get(@NotNull Path path, @NotNull Set<QName> props) throws IOException;
+
+    /**
+     * requests the members of the collection added, modified or removed since the given token
+     * with a sync-collection REPORT (RFC 6578). If the server doesn't support it, the changes are
+     * computed by diffing the current listing against a node-local snapshot.
+     *
+     * @param syncToken
+     *          the token of the previous changes or null to get all current members
+     */
+    @NotNull
+    DavChanges getChanges(@NotNull Path dirPath, @Nullable String syncToken) throws IOException,
+        DavResourceAccessException;
+
+    /**
+     * visits the resource and its descendants up to the given depth, parents before their
+     * children. The tree is requested with 'Depth: infinity' if the server allows it, otherwise
+     * level by level with parallel PROPFINDs. Only the {@link #MINIMAL_PROPS} are requested.
+     * Responses are streamed to the visitor, the visitor isn't called concurrently.
+     *
+     * @param maxDepth
+     *          0 for the resource only, 1 to include its children and so on
+     */
+    void walk(@NotNull Path path, int maxDepth, @NotNull DavResourceVisitor visitor)
+        throws IOException, DavResourceAccessException;
+
     @NotNull
     byte[] load(@NotNull Path filePath) throws IOException, DavResourceAccessException;
 
+    /**
+     * streams the file content, the caller is responsible for closing the returned stream
+     */
+    @NotNull
+    InputStream loadAsStream(@NotNull Path filePath) throws IOException,
+        DavResourceAccessException;
+
+    /**
+     * streams a byte range of the file content, the caller is responsible for closing the
+     * returned stream
+     *
+     * @param offset
+     *          the index of the first byte
+     * @param length
+     *          the number of bytes or -1 up to the end of the file
+     */
+    @NotNull
+    InputStream loadAsStream(@NotNull Path filePath, long offset, long length)
+        throws IOException, DavResourceAccessException;
+
+    /**
+     * copies the file content into the given stream without buffering the whole file in memory
+     *
+     * @return the number of bytes copied
+     */
+    long load(@NotNull Path filePath, @NotNull OutputStream out) throws IOException,
+        DavResourceAccessException;
+
     void createDirectory(@NotNull Path dirPath) throws IOException, DavResourceAccessException;
 
     void create(@NotNull Path filePath, @NotNull byte[] content) throws IOException,
@@ -52,8 +169,162 @@ public interface WebDavService {
     void createOrUpdate(@NotNull Path filePath, @NotNull byte[] content) throws IOException,
         DavResourceAccessException;
 
+    /**
+     * streams the content to a new file, the stream is consumed but not closed
+     *
+     * @param contentLength
+     *          the number of bytes provided by the stream or -1 if unknown, resulting in a chunked
+     *          transfer
+     */
+    void create(@NotNull Path filePath, @NotNull InputStream content, long contentLength)
+        throws IOException, DavResourceAccessException;
+
+    /**
+     * streams the content to an existing file, the stream is consumed but not closed
+     *
+     * @param contentLength
+     *          the number of bytes provided by the stream or -1 if unknown, resulting in a chunked
+     *          transfer
+     */
+    void update(@NotNull Path filePath, @NotNull InputStream content, long contentLength)
+        throws IOException, DavResourceAccessException;
+
+    /**
+     * streams the content to a new or existing file, the stream is consumed but not closed
+     *
+     * @param contentLength
+     *          the number of bytes provided by the stream or -1 if unknown, resulting in a chunked
+     *          transfer
+     */
+    void createOrUpdate(@NotNull Path filePath, @NotNull InputStream content, long contentLength)
+        throws IOException, DavResourceAccessException;
+
     void delete(@NotNull Path path) throws IOException, DavResourceAccessException;
 
+    /**
+     * copies the resource on the server, collections are copied including their members
+     *
+     * @throws DavResourceAlreadyExistsException
+     *           if the destination exists and overwrite is false
+     */
+    void copy(@NotNull Path srcPath, @NotNull Path dstPath, boolean overwrite)
+        throws IOException, DavResourceAccessException;
+
+    /**
+     * moves the resource on the server, collections are moved including their members
+     *
+     * @throws DavResourceAlreadyExistsException
+     *           if the destination exists and overwrite is false
+     */
+    void move(@NotNull Path srcPath, @NotNull Path dstPath, boolean overwrite)
+        throws IOException, DavResourceAccessException;
+
+    /**
+     * creates or updates the file, large content is uploaded in parallel parts if the server
+     * supports chunked uploads. An interrupted chunked upload of the same content resumes with
+     * the missing parts.
+     */
+    void createOrUpdate(@NotNull Path filePath, @NotNull ByteSource content) throws IOException,
+        DavResourceAccessException;
+
+    /**
+     * creates or updates the file unless the remote content is known to be identical, either by
+     * the server provided checksum or by the digest recorded by a previous upload as long as the
+     * remote ETag didn't change.
+     *
+     * @return true if the content was transferred, false if the upload was skipped
+     */
+    boolean createOrUpdateIfChanged(@NotNull Path filePath, @NotNull ByteSource content)
+        throws IOException, DavResourceAccessException;
+
+    /**
+     * @return the number of items the batch operations process in parallel
+     */
+    int getBatchParallelism();
+
+    /**
+     * creates or updates the given files in parallel, the content streams are opened and closed
+     * on demand
+     */
+    @NotNull
+    DavBatchResult<Void> putAll(@NotNull Map<Path, ByteSource> contents);
+
+    /**
+     * deletes the given resources in parallel
+     */
+    @NotNull
+    DavBatchResult<Void> deleteAll(@NotNull Collection<Path> paths);
+
+    /**
+     * loads the given files in parallel
+     */
+    @NotNull
+    DavBatchResult<byte[]> loadAll(@NotNull Collection<Path> filePaths);
+
+    /**
+     * streams all files within the directory and its descendants as ZIP archive, see
+     * {@link #zip(Collection, OutputStream)}. Entries are named relative to the directory.
+     *
+     * @return the number of bytes written per file, files failing before their entry was started
+     *         are skipped and reported as errors
+     */
+    @NotNull
+    DavBatchResult<Long> zip(@NotNull Path dirPath, @NotNull OutputStream out)
+        throws IOException, DavResourceAccessException;
+
+    /**
+     * streams the given files as ZIP archive, entries are named by their path. The following
+     * files are prefetched in parallel within a bounded read-ahead while the current one is
+     * compressed. Already compressed content, e.g. images or archives, is stored.
+     *
+     * @return the number of bytes written per file, files failing before their entry was started
+     *         are skipped and reported as errors
+     * @throws IOException
+     *           if writing to the output stream or streaming an entry failed, the archive is
+     *           incomplete then
+     */
+    @NotNull
+    DavBatchResult<Long> zip(@NotNull Collection<Path> filePaths, @NotNull OutputStream out)
+        throws IOException;
+
+    @Override
+    void close() throws IOException;
+
+  }
+
+  /**
+   * Asynchronous variant of the {@link WebDavConnection}. The futures fail with the exceptions of
+   * the blocking calls, with a {@link TimeoutException} if the call exceeds its timeout or with a
+   * {@link RejectedExecutionException} if the executor is saturated. Cancelling a future aborts
+   * the HTTP requests of the running call, releasing their connections even if blocked on a read.
+   * The connection must only be closed once all futures completed.
+   */
+  interface AsyncWebDavConnection extends AutoCloseable {
+
+    /**
+     * @return a view on the same connection with the given per-call timeout, 0 for none
+     */
+    @NotNull
+    AsyncWebDavConnection withTimeout(long timeout, @NotNull TimeUnit unit);
+
+    @NotNull
+    CompletableFuture<List<DavResource>> list(@NotNull Path path);
+
+    @NotNull
+    CompletableFuture<Optional<DavResource>> get(@NotNull Path path);
+
+    @NotNull
+    CompletableFuture<byte[]> load(@NotNull Path filePath);
+
+    @NotNull
+    CompletableFuture<Void> createDirectory(@NotNull Path dirPath);
+
+    @NotNull
+    CompletableFuture<Void> createOrUpdate(@NotNull Path filePath, @NotNull byte[] content);
+
+    @NotNull
+    CompletableFuture<Void> delete(@NotNull Path path);
+
     @Override
     void close() throws IOException;
 
@@ -0,0 +1,14 @@
+package com.celements.webdav.exception;
+
+/**
+ * thrown without contacting the server while the circuit breaker of the remote host is open
+ */
+public class DavCircuitOpenException extends DavConnectionException {
+
+  private static final long serialVersionUID = 1L;
+
+  public DavCircuitOpenException(String host) {
+    super("circuit open for host: " + host);
+  }
+
+}
@@ -0,0 +1,122 @@
+package com.celements.webdav.sync;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+
+/**
+ * State of the last sync, one line per file: sha256, size, remote etag, local version and name
+ * separated by tabs. Manifests of the first format without the version are still read.
+ */
+class DavSyncManifest {
+
+  static final String HEADER = "# celements webdav sync v2";
+  static final String HEADER_V1 = "# celements webdav sync v1";
+
+  private final Map<String, Entry> entries = new TreeMap<>();
+
+  /**
+   * @return the parsed manifest, empty if the content is of an unknown format
+   */
+  @NotNull
+  static DavSyncManifest parse(@NotNull byte[] content) {
+    DavSyncManifest manifest = new DavSyncManifest();
+    List<String> lines = Splitter.on('\n').omitEmptyStrings().splitToList(new String(content,
+        StandardCharsets.UTF_8));
+    int fieldCount = lines.isEmpty() ? 0 : HEADER.equals(lines.get(0)) ? 5
+        : HEADER_V1.equals(lines.get(0)) ? 4 : 0;
+    if (fieldCount > 0) {
+      for (String line : lines.subList(1, lines.size())) {
+        List<String> fields = Splitter.on('\t').limit(fieldCount).splitToList(line);
+        if (fields.size() == fieldCount) {
+          try {
+            manifest.put(fields.get(fieldCount - 1), new Entry(fields.get(0), Long.parseLong(
+                fields.get(1)), Strings.emptyToNull(fields.get(2)), (fieldCount == 5)
+                    ? Strings.emptyToNull(fields.get(3))
+                    : null));
+          } catch (NumberFormatException exc) {
+            // skip corrupt line, the file is treated as unknown and uploaded again
+          }
+        }
+      }
+    }
+    return manifest;
+  }
+
+  @Nullable
+  Entry get(@NotNull String name) {
+    return entries.get(name);
+  }
+
+  void put(@NotNull String name, @NotNull Entry entry) {
+    entries.put(checkNotNull(name), checkNotNull(entry));
+  }
+
+  void remove(@NotNull String name) {
+    entries.remove(name);
+  }
+
+  @NotNull
+  Set<String> getNames() {
+    return Collections.unmodifiableSet(entries.keySet());
+  }
+
+  @NotNull
+  byte[] toBytes() {
+    StringBuilder sb = new StringBuilder(HEADER).append('\n');
+    entries.forEach((name, entry) -> sb.append(entry.hash).append('\t').append(entry.size)
+        .append('\t').append(Strings.nullToEmpty(entry.etag)).append('\t')
+        .append(Strings.nullToEmpty(entry.version)).append('\t').append(name).append('\n'));
+    return sb.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  static final class Entry {
+
+    final String hash;
+    final long size;
+    final String etag;
+    final String version;
+
+    Entry(@NotNull String hash, long size, @Nullable String etag) {
+      this(hash, size, etag, null);
+    }
+
+    /**
+     * @param version
+     *          cheap fingerprint of the local file, see {@link WebDavSyncService}
+     */
+    Entry(@NotNull String hash, long size, @Nullable String etag, @Nullable String version) {
+      this.hash = checkNotNull(hash);
+      this.size = size;
+      this.etag = etag;
+      this.version = version;
+    }
+
+    boolean matches(@NotNull String hash, long size) {
+      return this.hash.equals(hash) && (this.size == size);
+    }
+
+    @NotNull
+    Entry withEtag(@Nullable String etag) {
+      return new Entry(hash, size, etag, version);
+    }
+
+    @NotNull
+    Entry withVersion(@Nullable String version) {
+      return new Entry(hash, size, etag, version);
+    }
+
+  }
+
+}
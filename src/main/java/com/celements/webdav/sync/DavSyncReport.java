@@ -0,0 +1,95 @@
+package com.celements.webdav.sync;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * Outcome of a {@link WebDavSyncService#sync} run.
+ */
+public class DavSyncReport {
+
+  private final List<String> uploaded = new ArrayList<>();
+  private final List<String> deleted = new ArrayList<>();
+  private final List<String> unchanged = new ArrayList<>();
+  private final Map<String, Exception> errors = new LinkedHashMap<>();
+  private long bytesUploaded;
+  private long bytesSkipped;
+  private long durationMillis;
+
+  void addUploaded(@NotNull String name, long size) {
+    uploaded.add(checkNotNull(name));
+    bytesUploaded += Math.max(size, 0);
+  }
+
+  void addDeleted(@NotNull String name) {
+    deleted.add(checkNotNull(name));
+  }
+
+  void addUnchanged(@NotNull String name, long size) {
+    unchanged.add(checkNotNull(name));
+    bytesSkipped += Math.max(size, 0);
+  }
+
+  void addError(@NotNull String name, @NotNull Exception error) {
+    errors.put(checkNotNull(name), checkNotNull(error));
+  }
+
+  void setDurationMillis(long durationMillis) {
+    this.durationMillis = durationMillis;
+  }
+
+  @NotNull
+  public List<String> getUploaded() {
+    return Collections.unmodifiableList(uploaded);
+  }
+
+  @NotNull
+  public List<String> getDeleted() {
+    return Collections.unmodifiableList(deleted);
+  }
+
+  @NotNull
+  public List<String> getUnchanged() {
+    return Collections.unmodifiableList(unchanged);
+  }
+
+  @NotNull
+  public Map<String, Exception> getErrors() {
+    return Collections.unmodifiableMap(errors);
+  }
+
+  public boolean hasErrors() {
+    return !errors.isEmpty();
+  }
+
+  public long getBytesUploaded() {
+    return bytesUploaded;
+  }
+
+  /**
+   * @return the size of the unchanged files, which didn't have to be uploaded again
+   */
+  public long getBytesSkipped() {
+    return bytesSkipped;
+  }
+
+  public long getDurationMillis() {
+    return durationMillis;
+  }
+
+  @Override
+  public String toString() {
+    return "DavSyncReport [uploaded=" + uploaded.size() + ", deleted=" + deleted.size()
+        + ", unchanged=" + unchanged.size() + ", errors=" + errors.keySet() + ", bytesUploaded="
+        + bytesUploaded + ", bytesSkipped=" + bytesSkipped + ", durationMillis="
+        + durationMillis + "]";
+  }
+
+}
@@ -0,0 +1,188 @@
+package com.celements.webdav.sync;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.apache.commons.configuration.ConfigurationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.annotation.Requirement;
+
+import com.celements.webdav.DavBatchResult;
+import com.celements.webdav.WebDavService;
+import com.celements.webdav.WebDavService.WebDavConnection;
+import com.celements.webdav.exception.DavConnectionException;
+import com.celements.webdav.exception.DavResourceAccessException;
+import com.github.sardine.DavResource;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteSource;
+
+@Component
+public class DefaultWebDavSyncService implements WebDavSyncService {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(DefaultWebDavSyncService.class);
+
+  @Requirement
+  private WebDavService webDavService;
+
+  @Override
+  public DavSyncReport sync(Map<String, ByteSource> files, Path dirPath) throws IOException,
+      DavResourceAccessException, DavConnectionException, MalformedURLException,
+      ConfigurationException {
+    try (WebDavConnection webDav = webDavService.connect()) {
+      return sync(webDav, files, dirPath);
+    }
+  }
+
+  @Override
+  public DavSyncReport sync(WebDavConnection webDav, Map<String, ByteSource> files,
+      Path dirPath) throws IOException, DavResourceAccessException {
+    return sync(webDav, files, Collections.emptyMap(), dirPath);
+  }
+
+  @Override
+  public DavSyncReport sync(WebDavConnection webDav, Map<String, ByteSource> files,
+      Map<String, String> versions, Path dirPath) throws IOException, DavResourceAccessException {
+    long startTime = System.currentTimeMillis();
+    DavSyncReport report = new DavSyncReport();
+    webDav.createDirectory(dirPath);
+    Map<String, DavResource> remoteFiles = listFiles(webDav, dirPath);
+    DavSyncManifest manifest = loadManifest(webDav, dirPath, remoteFiles);
+    boolean manifestChanged = false;
+    int parallelism = webDav.getBatchParallelism();
+    Map<Path, ByteSource> window = new LinkedHashMap<>();
+    Map<String, DavSyncManifest.Entry> uploadEntries = new HashMap<>();
+    DavBatchResult<Void> uploadResult = new DavBatchResult<>();
+    for (Map.Entry<String, ByteSource> file : files.entrySet()) {
+      String name = file.getKey();
+      String version = versions.get(name);
+      DavSyncManifest.Entry synced = manifest.get(name);
+      boolean remoteUnchanged = (synced != null) && isRemoteUnchanged(synced, remoteFiles.get(
+          name));
+      if (remoteUnchanged && (version != null) && version.equals(synced.version)) {
+        report.addUnchanged(name, synced.size);
+        continue;
+      }
+      byte[] content;
+      try {
+        content = file.getValue().read();
+      } catch (IOException exc) {
+        LOGGER.warn("sync - failed reading [{}]", name, exc);
+        report.addError(name, exc);
+        continue;
+      }
+      String hash = Hashing.sha256().hashBytes(content).toString();
+      if (remoteUnchanged && synced.matches(hash, content.length)) {
+        report.addUnchanged(name, content.length);
+        if (!Objects.equals(version, synced.version)) {
+          manifest.put(name, synced.withVersion(version));
+          manifestChanged = true;
+        }
+      } else {
+        window.put(dirPath.resolve(name), ByteSource.wrap(content));
+        uploadEntries.put(name, new DavSyncManifest.Entry(hash, content.length, null, version));
+        if (window.size() >= parallelism) {
+          uploadResult.addAll(webDav.putAll(window));
+          window = new LinkedHashMap<>();
+        }
+      }
+    }
+    if (!window.isEmpty()) {
+      uploadResult.addAll(webDav.putAll(window));
+    }
+    List<Path> deletes = new ArrayList<>();
+    for (String name : manifest.getNames()) {
+      if (!files.containsKey(name)) {
+        if (remoteFiles.containsKey(name)) {
+          deletes.add(dirPath.resolve(name));
+        } else {
+          report.addDeleted(name);
+        }
+      }
+    }
+    DavBatchResult<Void> deleteResult = webDav.deleteAll(deletes);
+    updateManifest(manifest, report, uploadEntries, uploadResult, deleteResult);
+    if (manifestChanged || !uploadEntries.isEmpty() || !deletes.isEmpty()
+        || !report.getDeleted().isEmpty()) {
+      if (!uploadResult.getSucceeded().isEmpty()) {
+        remoteFiles = listFiles(webDav, dirPath);
+        for (Path filePath : uploadResult.getSucceeded()) {
+          String name = filePath.getFileName().toString();
+          DavResource resource = remoteFiles.get(name);
+          manifest.put(name, uploadEntries.get(name).withEtag((resource != null)
+              ? resource.getEtag()
+              : null));
+        }
+      }
+      webDav.createOrUpdate(dirPath.resolve(MANIFEST_NAME), manifest.toBytes());
+    }
+    report.setDurationMillis(System.currentTimeMillis() - startTime);
+    LOGGER.info("sync - {} : {}", dirPath, report);
+    return report;
+  }
+
+  private void updateManifest(DavSyncManifest manifest, DavSyncReport report,
+      Map<String, DavSyncManifest.Entry> uploadEntries, DavBatchResult<Void> uploadResult,
+      DavBatchResult<Void> deleteResult) {
+    report.getDeleted().forEach(manifest::remove);
+    uploadResult.getSucceeded().forEach(filePath -> {
+      String name = filePath.getFileName().toString();
+      report.addUploaded(name, uploadEntries.get(name).size);
+    });
+    uploadResult.getErrors().forEach((filePath, exc) -> {
+      String name = filePath.getFileName().toString();
+      manifest.remove(name);
+      report.addError(name, exc);
+    });
+    deleteResult.getSucceeded().forEach(filePath -> {
+      String name = filePath.getFileName().toString();
+      manifest.remove(name);
+      report.addDeleted(name);
+    });
+    deleteResult.getErrors().forEach((filePath, exc) -> report.addError(
+        filePath.getFileName().toString(), exc));
+  }
+
+  /**
+   * a synced file is considered unchanged remotely if its etag is still the same, or its size if
+   * the server doesn't provide etags
+   */
+  private boolean isRemoteUnchanged(DavSyncManifest.Entry synced, DavResource resource) {
+    if (resource == null) {
+      return false;
+    } else if ((synced.etag != null) && (resource.getEtag() != null)) {
+      return synced.etag.equals(resource.getEtag());
+    }
+    return (resource.getContentLength() != null)
+        && (resource.getContentLength() == synced.size);
+  }
+
+  private Map<String, DavResource> listFiles(WebDavConnection webDav, Path dirPath)
+      throws IOException, DavResourceAccessException {
+    Map<String, DavResource> files = new HashMap<>();
+    for (DavResource resource : webDav.list(dirPath, WebDavService.MINIMAL_PROPS)) {
+      if (!resource.isDirectory()) {
+        files.put(resource.getName(), resource);
+      }
+    }
+    return files;
+  }
+
+  private DavSyncManifest loadManifest(WebDavConnection webDav, Path dirPath,
+      Map<String, DavResource> remoteFiles) throws IOException, DavResourceAccessException {
+    if (remoteFiles.remove(MANIFEST_NAME) != null) {
+      return DavSyncManifest.parse(webDav.load(dirPath.resolve(MANIFEST_NAME)));
+    }
+    return new DavSyncManifest();
+  }
+
+}
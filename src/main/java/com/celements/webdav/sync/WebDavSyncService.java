@@ -0,0 +1,65 @@
+package com.celements.webdav.sync;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.nio.file.Path;
+import java.util.Map;
+
+import javax.validation.constraints.NotNull;
+
+import org.apache.commons.configuration.ConfigurationException;
+import org.xwiki.component.annotation.ComponentRole;
+
+import com.celements.webdav.WebDavService.WebDavConnection;
+import com.celements.webdav.exception.DavConnectionException;
+import com.celements.webdav.exception.DavResourceAccessException;
+import com.google.common.io.ByteSource;
+
+/**
+ * Mirrors a set of local files into a WebDAV directory. The state of the last sync is kept in a
+ * manifest within the directory, so a rerun costs a listing plus the transfer of the changed
+ * files.
+ */
+@ComponentRole
+public interface WebDavSyncService {
+
+  String MANIFEST_NAME = ".celements-sync";
+
+  /**
+   * uploads new and changed files and deletes remote files synced before but missing locally.
+   * Remote files unknown to the manifest are never deleted.
+   *
+   * @param files
+   *          the local file contents by file name
+   */
+  @NotNull
+  DavSyncReport sync(@NotNull WebDavConnection webDav, @NotNull Map<String, ByteSource> files,
+      @NotNull Path dirPath) throws IOException, DavResourceAccessException;
+
+  /**
+   * like {@link #sync(WebDavConnection, Map, Path)}, but a file whose version is the same as
+   * recorded by the last sync is taken as unchanged without reading its content, as long as the
+   * remote file is unchanged too. The contents of the other files are read on the calling thread
+   * and uploaded in windows of {@link WebDavConnection#getBatchParallelism()} files, so at most
+   * one window is held in memory.
+   *
+   * @param files
+   *          the local file contents by file name, preferably read lazily
+   * @param versions
+   *          a cheap fingerprint of the local files by file name, e.g. version and date of an
+   *          attachment. Files without a version are always read.
+   */
+  @NotNull
+  DavSyncReport sync(@NotNull WebDavConnection webDav, @NotNull Map<String, ByteSource> files,
+      @NotNull Map<String, String> versions, @NotNull Path dirPath) throws IOException,
+      DavResourceAccessException;
+
+  /**
+   * syncs over a connection with the configured remote login
+   */
+  @NotNull
+  DavSyncReport sync(@NotNull Map<String, ByteSource> files, @NotNull Path dirPath)
+      throws IOException, DavResourceAccessException, DavConnectionException,
+      MalformedURLException, ConfigurationException;
+
+}
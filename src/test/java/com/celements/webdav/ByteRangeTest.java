@@ -0,0 +1,59 @@
+package com.celements.webdav;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class ByteRangeTest {
+
+  @Test
+  public void test_parse() {
+    ByteRange range = ByteRange.parse("bytes=100-199", 1000).get();
+    assertTrue(range.isSatisfiable());
+    assertEquals(100, range.getOffset());
+    assertEquals(100, range.getLength());
+    assertEquals("bytes 100-199/1000", range.getContentRange());
+  }
+
+  @Test
+  public void test_parse_openEnd() {
+    ByteRange range = ByteRange.parse("bytes=900-", 1000).get();
+    assertEquals(900, range.getOffset());
+    assertEquals(100, range.getLength());
+    assertEquals("bytes 900-999/1000", range.getContentRange());
+  }
+
+  @Test
+  public void test_parse_suffix() {
+    ByteRange range = ByteRange.parse("bytes=-300", 1000).get();
+    assertEquals(700, range.getOffset());
+    assertEquals(300, range.getLength());
+    assertEquals(0, ByteRange.parse("bytes=-3000", 1000).get().getOffset());
+  }
+
+  @Test
+  public void test_parse_lastBeyondEnd() {
+    ByteRange range = ByteRange.parse("bytes=500-5000", 1000).get();
+    assertEquals("bytes 500-999/1000", range.getContentRange());
+  }
+
+  @Test
+  public void test_parse_notSatisfiable() {
+    ByteRange range = ByteRange.parse("bytes=1000-", 1000).get();
+    assertFalse(range.isSatisfiable());
+    assertEquals("bytes */1000", range.getContentRange());
+    assertFalse(ByteRange.parse("bytes=-0", 1000).get().isSatisfiable());
+  }
+
+  @Test
+  public void test_parse_ignored() {
+    assertFalse(ByteRange.parse(null, 1000).isPresent());
+    assertFalse(ByteRange.parse("", 1000).isPresent());
+    assertFalse(ByteRange.parse("items=0-10", 1000).isPresent());
+    assertFalse(ByteRange.parse("bytes=0-10,20-30", 1000).isPresent());
+    assertFalse(ByteRange.parse("bytes=20-10", 1000).isPresent());
+    assertFalse(ByteRange.parse("bytes=a-10", 1000).isPresent());
+    assertFalse(ByteRange.parse("bytes=0-10", -1).isPresent());
+  }
+
+}
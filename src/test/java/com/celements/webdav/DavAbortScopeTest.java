@@ -0,0 +1,41 @@
+package com.celements.webdav;
+
+import static org.junit.Assert.*;
+
+import org.apache.http.client.methods.HttpGet;
+import org.junit.Test;
+
+public class DavAbortScopeTest {
+
+  @Test
+  public void test_abort() throws Exception {
+    DavAbortScope scope = new DavAbortScope();
+    HttpGet get = new HttpGet("http://localhost/");
+    scope.execute(() -> {
+      DavAbortScope.track(get);
+      scope.abort();
+      return null;
+    });
+    assertTrue(get.isAborted());
+  }
+
+  @Test
+  public void test_abort_beforeTracked() throws Exception {
+    DavAbortScope scope = new DavAbortScope();
+    scope.abort();
+    HttpGet get = new HttpGet("http://localhost/");
+    scope.execute(() -> {
+      DavAbortScope.track(get);
+      return null;
+    });
+    assertTrue(get.isAborted());
+  }
+
+  @Test
+  public void test_track_outsideScope() throws Exception {
+    HttpGet get = new HttpGet("http://localhost/");
+    DavAbortScope.track(get);
+    assertFalse(get.isAborted());
+  }
+
+}
@@ -0,0 +1,98 @@
+package com.celements.webdav;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DavAsyncExecutorTest {
+
+  private DavAsyncExecutor executor;
+
+  @Before
+  public void prepareTest() throws Exception {
+    executor = new DavAsyncExecutor(2, 10, 60);
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdown();
+  }
+
+  @Test
+  public void test_submit() throws Exception {
+    assertEquals("result", executor.submit(() -> "result", 0).get(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void test_submit_failure() throws Exception {
+    CompletableFuture<String> future = executor.submit(() -> {
+      throw new IOException("failed");
+    }, 0);
+    try {
+      future.get(5, TimeUnit.SECONDS);
+      fail("expecting ExecutionException");
+    } catch (ExecutionException exc) {
+      assertTrue(exc.getCause() instanceof IOException);
+    }
+  }
+
+  @Test
+  public void test_submit_timeout() throws Exception {
+    CountDownLatch interrupted = new CountDownLatch(1);
+    CompletableFuture<String> future = executor.submit(() -> {
+      try {
+        Thread.sleep(10000);
+      } catch (InterruptedException exc) {
+        interrupted.countDown();
+      }
+      return "late";
+    }, 50);
+    try {
+      future.get(5, TimeUnit.SECONDS);
+      fail("expecting ExecutionException");
+    } catch (ExecutionException exc) {
+      assertTrue(exc.getCause() instanceof TimeoutException);
+    }
+    assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void test_submit_timeout_abortsBlockingRead() throws Exception {
+    SardineClient client = new SardineClient(HttpClientBuilder.create(), "user", "pass");
+    CountDownLatch aborted = new CountDownLatch(1);
+    // accepts the connection on the OS level, but never responds
+    try (ServerSocket server = new ServerSocket(0)) {
+      CompletableFuture<byte[]> future = executor.submit(() -> {
+        try (InputStream is = client.get("http://localhost:" + server.getLocalPort() + "/")) {
+          return IOUtils.toByteArray(is);
+        } catch (IOException exc) {
+          aborted.countDown();
+          throw exc;
+        }
+      }, 100);
+      try {
+        future.get(5, TimeUnit.SECONDS);
+        fail("expecting ExecutionException");
+      } catch (ExecutionException exc) {
+        assertTrue(exc.getCause() instanceof TimeoutException);
+      }
+      assertTrue(aborted.await(5, TimeUnit.SECONDS));
+    } finally {
+      client.shutdown();
+    }
+  }
+
+}
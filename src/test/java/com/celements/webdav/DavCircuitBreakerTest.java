@@ -0,0 +1,90 @@
+package com.celements.webdav;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.celements.webdav.DavCircuitBreaker.State;
+import com.celements.webdav.exception.DavCircuitOpenException;
+
+public class DavCircuitBreakerTest {
+
+  private static final String HOST = "dav.example.org";
+
+  @Test
+  public void test_opensAfterThreshold() throws Exception {
+    DavCircuitBreaker breaker = new DavCircuitBreaker(3, 60);
+    breaker.recordFailure(HOST);
+    breaker.recordFailure(HOST);
+    breaker.acquire(HOST);
+    assertFalse(breaker.isOpen(HOST));
+    breaker.recordFailure(HOST);
+    assertTrue(breaker.isOpen(HOST));
+    assertEquals(State.OPEN, breaker.getState(HOST));
+    try {
+      breaker.acquire(HOST);
+      fail("expecting DavCircuitOpenException");
+    } catch (DavCircuitOpenException exc) {
+      assertTrue(exc.getMessage().contains(HOST));
+    }
+    assertFalse(breaker.isOpen("other.example.org"));
+  }
+
+  @Test
+  public void test_successResetsFailures() throws Exception {
+    DavCircuitBreaker breaker = new DavCircuitBreaker(2, 60);
+    breaker.recordFailure(HOST);
+    breaker.recordSuccess(HOST);
+    breaker.recordFailure(HOST);
+    assertEquals(State.CLOSED, breaker.getState(HOST));
+  }
+
+  @Test
+  public void test_halfOpen_probeSucceeds() throws Exception {
+    DavCircuitBreaker breaker = new DavCircuitBreaker(1, 0);
+    breaker.recordFailure(HOST);
+    assertEquals(State.OPEN, breaker.getState(HOST));
+    breaker.acquire(HOST);
+    assertEquals(State.HALF_OPEN, breaker.getState(HOST));
+    try {
+      breaker.acquire(HOST);
+      fail("expecting DavCircuitOpenException while probe in flight");
+    } catch (DavCircuitOpenException exc) {
+      // expected
+    }
+    breaker.recordSuccess(HOST);
+    assertEquals(State.CLOSED, breaker.getState(HOST));
+    breaker.acquire(HOST);
+  }
+
+  @Test
+  public void test_halfOpen_probeFails() throws Exception {
+    DavCircuitBreaker breaker = new DavCircuitBreaker(5, 0);
+    for (int i = 0; i < 5; i++) {
+      breaker.recordFailure(HOST);
+    }
+    breaker.acquire(HOST);
+    breaker.recordFailure(HOST);
+    assertEquals(State.OPEN, breaker.getState(HOST));
+  }
+
+  @Test
+  public void test_halfOpen_probeInconclusive() throws Exception {
+    DavCircuitBreaker breaker = new DavCircuitBreaker(1, 0);
+    breaker.recordFailure(HOST);
+    breaker.acquire(HOST);
+    assertEquals(State.HALF_OPEN, breaker.getState(HOST));
+    breaker.recordInconclusive(HOST);
+    assertEquals(State.OPEN, breaker.getState(HOST));
+    breaker.acquire(HOST);
+    assertEquals(State.HALF_OPEN, breaker.getState(HOST));
+  }
+
+  @Test
+  public void test_inconclusive_closed() throws Exception {
+    DavCircuitBreaker breaker = new DavCircuitBreaker(1, 60);
+    breaker.recordInconclusive(HOST);
+    assertEquals(State.CLOSED, breaker.getState(HOST));
+  }
+
+}
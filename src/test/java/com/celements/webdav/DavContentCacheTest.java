@@ -0,0 +1,110 @@
+package com.celements.webdav;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Strings;
+
+public class DavContentCacheTest {
+
+  private Path diskDir;
+
+  @Before
+  public void prepareTest() throws Exception {
+    diskDir = Files.createTempDirectory("webdav-contentcache");
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    FileUtils.deleteDirectory(diskDir.toFile());
+  }
+
+  @Test
+  public void test_put_get() throws Exception {
+    DavContentCache cache = new DavContentCache(100, 50, null, 0);
+    DavContentCache.Entry entry = new DavContentCache.Entry("\"abc\"", null, new byte[10]);
+    cache.put("key", entry);
+    assertSame(entry, cache.get("key").get());
+    cache.invalidate("key");
+    assertFalse(cache.get("key").isPresent());
+  }
+
+  @Test
+  public void test_put_notCacheable() throws Exception {
+    DavContentCache cache = new DavContentCache(100, 50, null, 0);
+    cache.put("noValidator", new DavContentCache.Entry(null, null, new byte[10]));
+    cache.put("tooLarge", new DavContentCache.Entry("\"abc\"", null, new byte[51]));
+    assertFalse(cache.get("noValidator").isPresent());
+    assertFalse(cache.get("tooLarge").isPresent());
+  }
+
+  @Test
+  public void test_spillToDisk() throws Exception {
+    DavContentCache cache = new DavContentCache(40, 40, diskDir, 1000);
+    byte[] content = new byte[] { 1, 2, 3 };
+    cache.put("first", new DavContentCache.Entry("\"1\"", "Mon, 01 Jan 2018 00:00:00 GMT",
+        content));
+    for (int i = 0; i < 20; i++) {
+      cache.put("other" + i, new DavContentCache.Entry("\"x\"", null, new byte[20]));
+    }
+    DavContentCache.Entry entry = cache.get("first").get();
+    assertEquals("\"1\"", entry.etag);
+    assertEquals("Mon, 01 Jan 2018 00:00:00 GMT", entry.lastModified);
+    assertArrayEquals(content, entry.content);
+  }
+
+  @Test
+  public void test_indexDisk() throws Exception {
+    DavContentCache cache = new DavContentCache(40, 40, diskDir, 100000);
+    byte[] content = new byte[20];
+    Arrays.fill(content, (byte) 7);
+    cache.put("first", new DavContentCache.Entry("\"1\"", null, content));
+    for (int i = 0; i < 20; i++) {
+      cache.put("other" + i, new DavContentCache.Entry("\"x\"", null, new byte[20]));
+    }
+    Path corrupt = Files.write(diskDir.resolve(Strings.repeat("a", 64)), new byte[] { 1 });
+    Path foreign = Files.write(diskDir.resolve("foreign.txt"), new byte[] { 1 });
+    DavContentCache restarted = new DavContentCache(40, 40, diskDir, 100000);
+    assertArrayEquals(content, restarted.get("first").get().content);
+    assertFalse(Files.exists(corrupt));
+    assertTrue(Files.exists(foreign));
+  }
+
+  @Test
+  public void test_indexDisk_bounded() throws Exception {
+    DavContentCache cache = new DavContentCache(20, 20, diskDir, 1000);
+    for (int i = 0; i < 20; i++) {
+      cache.put("entry" + i, new DavContentCache.Entry("\"x\"", null, new byte[20]));
+    }
+    assertTrue(countFiles() > 10);
+    new DavContentCache(20, 20, diskDir, 100);
+    assertTrue(countFiles() <= 2);
+  }
+
+  private long countFiles() throws Exception {
+    try (Stream<Path> files = Files.list(diskDir)) {
+      return files.count();
+    }
+  }
+
+  @Test
+  public void test_stats() throws Exception {
+    DavContentCache cache = new DavContentCache(100, 50, null, 0);
+    cache.recordMiss();
+    cache.recordRevalidation();
+    cache.recordHit();
+    assertEquals(Long.valueOf(1), cache.getStats().get("hits"));
+    assertEquals(Long.valueOf(1), cache.getStats().get("misses"));
+    assertEquals(Long.valueOf(1), cache.getStats().get("revalidations"));
+  }
+
+}
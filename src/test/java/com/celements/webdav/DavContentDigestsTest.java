@@ -0,0 +1,31 @@
+package com.celements.webdav;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class DavContentDigestsTest {
+
+  @Test
+  public void test_matches() {
+    DavContentDigests digests = new DavContentDigests(10);
+    assertFalse(digests.matches("key", "\"e1\"", "abc"));
+    digests.record("key", "\"e1\"", "abc");
+    assertTrue(digests.matches("key", "\"e1\"", "ABC"));
+    assertFalse(digests.matches("key", "\"e2\"", "abc"));
+    assertFalse(digests.matches("key", null, "abc"));
+    assertFalse(digests.matches("key", "\"e1\"", "def"));
+    assertFalse(digests.matches("other", "\"e1\"", "abc"));
+  }
+
+  @Test
+  public void test_parseChecksum() {
+    assertEquals("abc", DavContentDigests.parseChecksum("SHA1:ABC MD5:def ADLER32:123",
+        "sha1"));
+    assertEquals("def", DavContentDigests.parseChecksum(" md5:def\n", "MD5"));
+    assertNull(DavContentDigests.parseChecksum("MD5:def", "SHA1"));
+    assertNull(DavContentDigests.parseChecksum("", "SHA1"));
+    assertNull(DavContentDigests.parseChecksum(null, "SHA1"));
+  }
+
+}
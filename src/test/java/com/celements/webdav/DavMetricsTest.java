@@ -0,0 +1,37 @@
+package com.celements.webdav;
+
+import static org.junit.Assert.*;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+public class DavMetricsTest {
+
+  @Test
+  public void test_getRequestStats() throws Exception {
+    MBeanServer mbeanServer = MBeanServerFactory.newMBeanServer();
+    DavMetrics metrics = new DavMetrics(mbeanServer);
+    DavOperationStats stats = metrics.getRequestStats("PUT", "dav.example.org");
+    assertSame(stats, metrics.getRequestStats("PUT", "dav.example.org"));
+    assertNotSame(stats, metrics.getRequestStats("GET", "dav.example.org"));
+    assertNotSame(stats, metrics.getOperationStats("PUT", "dav.example.org"));
+    assertTrue(mbeanServer.isRegistered(new ObjectName(DavMetrics.JMX_DOMAIN
+        + ":type=Request,host=\"dav.example.org\",method=PUT")));
+  }
+
+  @Test
+  public void test_unregisterAll() throws Exception {
+    MBeanServer mbeanServer = MBeanServerFactory.newMBeanServer();
+    DavMetrics metrics = new DavMetrics(mbeanServer);
+    metrics.getRequestStats("PUT", "dav.example.org").recordRetry();
+    metrics.getOperationStats("connect", "dav.example.org");
+    metrics.unregisterAll();
+    assertTrue(mbeanServer.queryNames(new ObjectName(DavMetrics.JMX_DOMAIN + ":*"), null)
+        .isEmpty());
+    assertEquals(0, metrics.getRequestStats("PUT", "dav.example.org").getRetryCount());
+  }
+
+}
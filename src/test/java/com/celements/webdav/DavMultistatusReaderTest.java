@@ -0,0 +1,38 @@
+package com.celements.webdav;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.github.sardine.DavResource;
+
+public class DavMultistatusReaderTest {
+
+  private static final String MULTISTATUS = "<?xml version=\"1.0\"?>"
+      + "<d:multistatus xmlns:d=\"DAV:\">"
+      + "<d:response><d:href>/dav/dir/</d:href><d:propstat><d:prop>"
+      + "<d:resourcetype><d:collection/></d:resourcetype></d:prop>"
+      + "<d:status>HTTP/1.1 200 OK</d:status></d:propstat></d:response>"
+      + "<d:response><d:href>/dav/dir/file.txt</d:href><d:propstat><d:prop>"
+      + "<d:resourcetype/><d:getcontentlength>42</d:getcontentlength></d:prop>"
+      + "<d:status>HTTP/1.1 200 OK</d:status></d:propstat></d:response>"
+      + "</d:multistatus>";
+
+  @Test
+  public void test_read() throws Exception {
+    List<DavResource> resources = new ArrayList<>();
+    DavMultistatusReader.read(new ByteArrayInputStream(MULTISTATUS.getBytes(
+        StandardCharsets.UTF_8)), resources::add);
+    assertEquals(2, resources.size());
+    assertTrue(resources.get(0).isDirectory());
+    assertEquals("/dav/dir/", resources.get(0).getHref().getPath());
+    assertFalse(resources.get(1).isDirectory());
+    assertEquals(42L, resources.get(1).getContentLength().longValue());
+  }
+
+}
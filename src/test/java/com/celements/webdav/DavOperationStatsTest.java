@@ -0,0 +1,40 @@
+package com.celements.webdav;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class DavOperationStatsTest {
+
+  @Test
+  public void test_record() {
+    DavOperationStats stats = new DavOperationStats();
+    for (int i = 0; i < 98; i++) {
+      stats.record(TimeUnit.MILLISECONDS.toNanos(3), DavOperationStats.OUTCOME_SUCCESS);
+    }
+    stats.record(TimeUnit.MILLISECONDS.toNanos(150), "404");
+    stats.record(TimeUnit.MILLISECONDS.toNanos(1500), DavOperationStats.OUTCOME_IO_ERROR);
+    assertEquals(100, stats.getCount());
+    assertEquals(2, stats.getErrorCount());
+    assertEquals(98L, stats.getOutcomes().get(DavOperationStats.OUTCOME_SUCCESS).longValue());
+    assertEquals(1L, stats.getOutcomes().get("404").longValue());
+    assertEquals(5, stats.getP50Millis());
+    assertEquals(200, stats.getP99Millis());
+    assertEquals(1500, stats.getMaxMillis());
+  }
+
+  @Test
+  public void test_reset() {
+    DavOperationStats stats = new DavOperationStats();
+    stats.record(TimeUnit.MILLISECONDS.toNanos(3), DavOperationStats.OUTCOME_SUCCESS);
+    stats.recordBytes(42);
+    stats.reset();
+    assertEquals(0, stats.getCount());
+    assertEquals(0, stats.getBytesTransferred());
+    assertEquals(0, stats.getP99Millis());
+    assertTrue(stats.getOutcomes().isEmpty());
+  }
+
+}
@@ -0,0 +1,65 @@
+package com.celements.webdav;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.Date;
+
+import org.apache.http.NoHttpResponseException;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.junit.Test;
+
+import com.github.sardine.impl.SardineException;
+
+public class DavRetryPolicyTest {
+
+  @Test
+  public void test_isRetryable() {
+    assertTrue(DavRetryPolicy.isRetryable(new SardineException("", 502, "")));
+    assertTrue(DavRetryPolicy.isRetryable(new SardineException("", 503, "")));
+    assertTrue(DavRetryPolicy.isRetryable(new SardineException("", 504, "")));
+    assertTrue(DavRetryPolicy.isRetryable(new SocketException("Connection reset")));
+    assertTrue(DavRetryPolicy.isRetryable(new NoHttpResponseException("")));
+    assertTrue(DavRetryPolicy.isRetryable(new ConnectTimeoutException()));
+    assertFalse(DavRetryPolicy.isRetryable(new ConnectionPoolTimeoutException()));
+    assertFalse(DavRetryPolicy.isRetryable(new SardineException("", 500, "")));
+    assertFalse(DavRetryPolicy.isRetryable(new SardineException("", 404, "")));
+    assertFalse(DavRetryPolicy.isRetryable(new SocketTimeoutException()));
+    assertFalse(DavRetryPolicy.isRetryable(new IOException()));
+  }
+
+  @Test
+  public void test_getDelayMillis() {
+    DavRetryPolicy policy = new DavRetryPolicy(5, 10000, 100, 300);
+    IOException exc = new SocketException();
+    for (int i = 0; i < 100; i++) {
+      assertTrue(policy.getDelayMillis(1, exc) <= 100);
+      assertTrue(policy.getDelayMillis(2, exc) <= 200);
+      long delay = policy.getDelayMillis(10, exc);
+      assertTrue((delay >= 0) && (delay <= 300));
+    }
+  }
+
+  @Test
+  public void test_getDelayMillis_retryAfter() {
+    DavRetryPolicy policy = new DavRetryPolicy(5, 10000, 100, 300);
+    assertEquals(7000, policy.getDelayMillis(1, new SardineClient.RetryAfterException(
+        new SardineException("", 503, ""), 7000)));
+  }
+
+  @Test
+  public void test_parseRetryAfter() {
+    assertEquals(120000, SardineClient.parseRetryAfter(" 120 "));
+    assertEquals(0, SardineClient.parseRetryAfter("-5"));
+    assertEquals(-1, SardineClient.parseRetryAfter("soon"));
+    assertEquals(-1, SardineClient.parseRetryAfter(null));
+    long delay = SardineClient.parseRetryAfter(DateUtils.formatDate(new Date(
+        System.currentTimeMillis() + 60000)));
+    assertTrue((delay > 50000) && (delay <= 60000));
+  }
+
+}
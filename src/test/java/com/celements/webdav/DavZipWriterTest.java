@@ -0,0 +1,170 @@
+package com.celements.webdav;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.celements.webdav.exception.DavFileNotExistsException;
+
+public class DavZipWriterTest {
+
+  private ExecutorService executor;
+  private Map<Path, byte[]> files;
+
+  @Before
+  public void prepareTest() {
+    executor = Executors.newFixedThreadPool(2);
+    files = new HashMap<>();
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void test_write() throws Exception {
+    byte[] text = repeat("some text ", 1000);
+    byte[] image = repeat("jpeg", 100);
+    byte[] large = repeat("large ", 100);
+    files.put(Paths.get("a.txt"), text);
+    files.put(Paths.get("img.jpg"), image);
+    files.put(Paths.get("sub", "large.txt"), large);
+    DavZipWriter writer = new DavZipWriter(executor, 2, 10000);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    DavBatchResult<Long> result = writer.write(Arrays.asList(
+        newEntry(Paths.get("a.txt"), text.length, null),
+        newEntry(Paths.get("missing.txt"), 10, null),
+        newEntry(Paths.get("img.jpg"), image.length, "image/jpeg"),
+        newEntry(Paths.get("sub", "large.txt"), -1, null)), this::open, out);
+
+    assertEquals(3, result.getSucceeded().size());
+    assertEquals(Long.valueOf(text.length), result.getResults().get(Paths.get("a.txt")));
+    assertTrue(result.getErrors().get(Paths.get("missing.txt"))
+        instanceof DavFileNotExistsException);
+    try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+      assertEntry(zip, "a.txt", ZipEntry.DEFLATED, text);
+      assertEntry(zip, "img.jpg", ZipEntry.STORED, image);
+      assertEntry(zip, "sub/large.txt", ZipEntry.DEFLATED, large);
+      assertNull(zip.getNextEntry());
+    }
+  }
+
+  @Test
+  public void test_write_sizeMismatch() throws Exception {
+    byte[] content = repeat("x", 100);
+    files.put(Paths.get("a.txt"), content);
+    DavZipWriter writer = new DavZipWriter(executor, 2, 10000);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    DavBatchResult<Long> result = writer.write(Arrays.asList(newEntry(Paths.get("a.txt"), 10,
+        null)), this::open, out);
+    assertEquals(Long.valueOf(content.length), result.getResults().get(Paths.get("a.txt")));
+    try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+      assertEntry(zip, "a.txt", ZipEntry.DEFLATED, content);
+    }
+  }
+
+  @Test
+  public void test_write_unsafeName() throws Exception {
+    byte[] content = repeat("x", 100);
+    files.put(Paths.get("a.txt"), content);
+    DavZipWriter writer = new DavZipWriter(executor, 2, 10000);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    DavBatchResult<Long> result = writer.write(Arrays.asList(new DavZipWriter.Entry(Paths.get(
+        "evil.txt"), "../evil.txt", 100, null, -1), newEntry(Paths.get("a.txt"), 100, null)),
+        this::open, out);
+    assertEquals(Collections.singleton(Paths.get("a.txt")), result.getSucceeded());
+    assertTrue(result.getErrors().get(Paths.get("evil.txt")) instanceof ZipException);
+    try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+      assertEntry(zip, "a.txt", ZipEntry.DEFLATED, content);
+      assertNull(zip.getNextEntry());
+    }
+  }
+
+  @Test
+  public void test_write_prefetchBound() throws Exception {
+    files.put(Paths.get("a.txt"), repeat("a", 100));
+    files.put(Paths.get("b.txt"), repeat("b", 100));
+    DavZipWriter writer = new DavZipWriter(executor, 1, 10000);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    List<Integer> writtenOnOpen = Collections.synchronizedList(new ArrayList<>());
+    DavBatchResult<Long> result = writer.write(Arrays.asList(newEntry(Paths.get("a.txt"), 100,
+        null), newEntry(Paths.get("b.txt"), 100, null)), path -> {
+          writtenOnOpen.add(out.size());
+          return open(path);
+        }, out);
+    assertEquals(2, result.getSucceeded().size());
+    assertEquals(0, (int) writtenOnOpen.get(0));
+    assertTrue("b.txt prefetched before a.txt was written", writtenOnOpen.get(1) > 0);
+  }
+
+  @Test
+  public void test_isSafeName() {
+    assertTrue(DavZipWriter.isSafeName("a.txt"));
+    assertTrue(DavZipWriter.isSafeName("sub/a..b.txt"));
+    assertTrue(DavZipWriter.isSafeName("..a/b"));
+    assertFalse(DavZipWriter.isSafeName(""));
+    assertFalse(DavZipWriter.isSafeName(".."));
+    assertFalse(DavZipWriter.isSafeName("../a.txt"));
+    assertFalse(DavZipWriter.isSafeName("sub/../../a.txt"));
+    assertFalse(DavZipWriter.isSafeName("sub\\..\\a.txt"));
+    assertFalse(DavZipWriter.isSafeName("/etc/passwd"));
+    assertFalse(DavZipWriter.isSafeName("C:/a.txt"));
+  }
+
+  @Test
+  public void test_isCompressed() {
+    assertTrue(newEntry(Paths.get("a.ZIP"), 0, null).isCompressed());
+    assertTrue(newEntry(Paths.get("a"), 0, "video/mp4").isCompressed());
+    assertFalse(newEntry(Paths.get("a.txt"), 0, "text/plain").isCompressed());
+  }
+
+  private DavZipWriter.Entry newEntry(Path path, long size, String contentType) {
+    return new DavZipWriter.Entry(path, path.toString().replace('\\', '/'), size, contentType,
+        -1);
+  }
+
+  private ByteArrayInputStream open(Path path) throws DavFileNotExistsException {
+    if (!files.containsKey(path)) {
+      throw new DavFileNotExistsException(null);
+    }
+    return new ByteArrayInputStream(files.get(path));
+  }
+
+  private static void assertEntry(ZipInputStream zip, String name, int method, byte[] content)
+      throws Exception {
+    ZipEntry entry = zip.getNextEntry();
+    assertEquals(name, entry.getName());
+    assertEquals(method, entry.getMethod());
+    assertArrayEquals(content, IOUtils.toByteArray(zip));
+  }
+
+  private static byte[] repeat(String str, int count) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < count; i++) {
+      sb.append(str);
+    }
+    return sb.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+}
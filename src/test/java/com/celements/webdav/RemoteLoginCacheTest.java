@@ -0,0 +1,76 @@
+package com.celements.webdav;
+
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.configuration.ConfigurationException;
+import org.junit.Before;
+import org.junit.Test;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.observation.EventListener;
+
+import com.celements.auth.RemoteLogin;
+import com.celements.common.test.AbstractComponentTest;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.web.Utils;
+
+public class RemoteLoginCacheTest extends AbstractComponentTest {
+
+  private RemoteLoginCache remoteLoginCache;
+  private DocumentReference docRef;
+  private AtomicInteger loadCount;
+
+  @Before
+  public void prepareTest() {
+    docRef = new DocumentReference("wiki", "WebDAV", "Config");
+    loadCount = new AtomicInteger();
+    remoteLoginCache = Utils.getComponent(RemoteLoginCache.class);
+    remoteLoginCache.invalidateAll();
+  }
+
+  @Test
+  public void test_get_cached() throws Exception {
+    RemoteLogin remoteLogin = load(remoteLoginCache);
+    assertSame(remoteLogin, load(remoteLoginCache));
+    assertEquals(1, loadCount.get());
+  }
+
+  @Test
+  public void test_get_failing() throws Exception {
+    RemoteLoginCache cache = new DefaultRemoteLoginCache(10, 60);
+    try {
+      cache.get(docRef, () -> {
+        throw new ConfigurationException("illegal");
+      });
+      fail("expecting ConfigurationException");
+    } catch (ConfigurationException exc) {
+      assertEquals("illegal", exc.getMessage());
+    }
+    load(cache);
+    assertEquals(1, loadCount.get());
+  }
+
+  @Test
+  public void test_invalidatedByListener() throws Exception {
+    RemoteLogin remoteLogin = load(remoteLoginCache);
+    XWikiDocument doc = createMock(XWikiDocument.class);
+    expect(doc.getDocumentReference()).andReturn(docRef).anyTimes();
+    replay(doc);
+    Utils.getComponent(EventListener.class, WebDavConfigDocListener.NAME).onEvent(
+        new DocumentUpdatedEvent(), doc, null);
+    assertNotSame(remoteLogin, load(remoteLoginCache));
+    assertEquals(2, loadCount.get());
+    verify(doc);
+  }
+
+  private RemoteLogin load(RemoteLoginCache cache) throws ConfigurationException {
+    return cache.get(docRef, () -> {
+      loadCount.incrementAndGet();
+      return new RemoteLogin();
+    });
+  }
+
+}
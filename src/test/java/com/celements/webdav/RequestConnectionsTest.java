@@ -0,0 +1,103 @@
+package com.celements.webdav;
+
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.model.reference.DocumentReference;
+
+import com.celements.auth.RemoteLogin;
+import com.celements.webdav.WebDavService.WebDavConnection;
+
+public class RequestConnectionsTest {
+
+  private ExecutionContext execContext;
+  private WebDavService webDavServiceMock;
+  private RemoteLogin remoteLoginMock;
+
+  @Before
+  public void prepareTest() {
+    execContext = new ExecutionContext();
+    webDavServiceMock = createMock(WebDavService.class);
+    remoteLoginMock = createMock(RemoteLogin.class);
+    expect(remoteLoginMock.getDocumentReference()).andReturn(new DocumentReference("wiki",
+        "WebDAV", "Config")).anyTimes();
+  }
+
+  @Test
+  public void test_getConnection_shared() throws Exception {
+    WebDavConnection webDavMock = createMock(WebDavConnection.class);
+    expect(webDavServiceMock.connect(remoteLoginMock)).andReturn(webDavMock).once();
+    webDavMock.close();
+    expectLastCall().once();
+
+    replay(webDavServiceMock, remoteLoginMock, webDavMock);
+    WebDavConnection webDav = RequestConnections.get(execContext).getConnection(
+        webDavServiceMock, remoteLoginMock);
+    assertSame(webDav, RequestConnections.get(execContext).getConnection(webDavServiceMock,
+        remoteLoginMock));
+    assertEquals(1, RequestConnections.get(execContext).size());
+    RequestConnections.release(execContext);
+    assertNull(execContext.getProperty(RequestConnections.EXEC_CONTEXT_KEY));
+    verify(webDavServiceMock, remoteLoginMock, webDavMock);
+  }
+
+  @Test
+  public void test_session() throws Exception {
+    WebDavConnection webDavMock = createMock(WebDavConnection.class);
+    expect(webDavServiceMock.connect(remoteLoginMock)).andReturn(webDavMock).once();
+    webDavMock.close();
+    expectLastCall().once();
+
+    replay(webDavServiceMock, remoteLoginMock, webDavMock);
+    RequestConnections.get(execContext);
+    try (WebDavScriptSession session = new WebDavScriptSession(execContext)) {
+      assertTrue(session.isOpen());
+      RequestConnections.get(execContext).getConnection(webDavServiceMock, remoteLoginMock);
+      assertEquals(1, session.getConnectionCount());
+    }
+    assertFalse(new WebDavScriptSession(execContext).isOpen());
+    RequestConnections.release(execContext);
+    verify(webDavServiceMock, remoteLoginMock, webDavMock);
+  }
+
+  @Test
+  public void test_detectLeaks() throws Exception {
+    WebDavConnection webDavMock = createMock(WebDavConnection.class);
+    expect(webDavServiceMock.connect(remoteLoginMock)).andReturn(webDavMock).once();
+
+    replay(webDavServiceMock, remoteLoginMock, webDavMock);
+    RequestConnections.get(new ExecutionContext()).getConnection(webDavServiceMock,
+        remoteLoginMock);
+    int leaks = 0;
+    for (int i = 0; (i < 100) && (leaks == 0); i++) {
+      System.gc();
+      Thread.sleep(10);
+      leaks += RequestConnections.detectLeaks();
+    }
+    assertTrue(leaks > 0);
+    verify(webDavServiceMock, remoteLoginMock, webDavMock);
+  }
+
+  @Test
+  public void test_detectLeaks_released() throws Exception {
+    WebDavConnection webDavMock = createMock(WebDavConnection.class);
+    expect(webDavServiceMock.connect(remoteLoginMock)).andReturn(webDavMock).once();
+    webDavMock.close();
+    expectLastCall().once();
+
+    replay(webDavServiceMock, remoteLoginMock, webDavMock);
+    RequestConnections.detectLeaks();
+    RequestConnections.get(execContext).getConnection(webDavServiceMock, remoteLoginMock);
+    RequestConnections.release(execContext);
+    execContext = null;
+    for (int i = 0; i < 10; i++) {
+      System.gc();
+      assertEquals(0, RequestConnections.detectLeaks());
+    }
+    verify(webDavServiceMock, remoteLoginMock, webDavMock);
+  }
+
+}
@@ -4,36 +4,69 @@ import static com.celements.common.test.CelementsTestUtils.*;
 import static org.easymock.EasyMock.*;
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ConnectException;
 import java.net.MalformedURLException;
+import java.net.SocketException;
+import java.net.URI;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.zip.ZipException;
+import java.util.zip.ZipInputStream;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.message.BasicHttpResponse;
+import org.easymock.Capture;
+import org.easymock.CaptureType;
+import org.easymock.EasyMock;
 import org.junit.Before;
 import org.junit.Test;
 import org.xwiki.configuration.ConfigurationSource;
-import org.xwiki.context.Execution;
 
 import com.celements.auth.RemoteLogin;
 import com.celements.common.test.AbstractComponentTest;
-import com.celements.configuration.CelementsFromWikiConfigurationSource;
 import com.celements.webdav.SardineAdapter.SardineConnection;
+import com.celements.webdav.WebDavService.DavResourceVisitor;
+import com.celements.webdav.exception.DavCircuitOpenException;
+import com.celements.webdav.exception.DavFileNotExistsException;
+import com.celements.webdav.exception.DavResourceAccessException;
+import com.celements.webdav.exception.DavResourceAlreadyExistsException;
 import com.github.sardine.DavResource;
-import com.github.sardine.Sardine;
+import com.github.sardine.impl.SardineException;
+import com.github.sardine.impl.io.ContentLengthInputStream;
+import com.github.sardine.report.SyncCollectionReport;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteSource;
 import com.google.common.io.Resources;
 import com.xpn.xwiki.web.Utils;
 
 public class SardineAdapterTest extends AbstractComponentTest {
 
+  private static final byte[] CONTENT = "content".getBytes(StandardCharsets.UTF_8);
+
   private SardineAdapter sardineAdapter;
 
   @Before
   public void prepareTest() throws Exception {
-    registerComponentMock(ConfigurationSource.class, CelementsFromWikiConfigurationSource.NAME,
+    registerComponentMock(ConfigurationSource.class, SardineAdapter.NODE_CONFIG_SOURCE,
         getConfigurationSource());
     sardineAdapter = (SardineAdapter) Utils.getComponent(WebDavService.class);
     assertNotNull(sardineAdapter);
@@ -42,8 +75,8 @@ public class SardineAdapterTest extends AbstractComponentTest {
   @Test
   public void test_buildCompleteUrl() throws Exception {
     URL baseUrl = new URL("http://celements.com/");
-    try (SardineConnection conn = sardineAdapter.new SardineConnection(
-        createMockAndAddToDefault(Sardine.class), baseUrl)) {
+    try (SardineConnection conn = newConnection(createMockAndAddToDefault(SardineClient.class),
+        baseUrl)) {
       assertEquals("http://celements.com/dir",
           conn.buildCompleteUrl(Paths.get("dir")).toExternalForm());
       assertEquals("http://celements.com/dir/sub",
@@ -54,8 +87,8 @@ public class SardineAdapterTest extends AbstractComponentTest {
   @Test
   public void test_buildCompleteUrl_withBasePath() throws Exception {
     URL baseUrl = new URL("http://celements.com/main");
-    try (SardineConnection conn = sardineAdapter.new SardineConnection(
-        createMockAndAddToDefault(Sardine.class), baseUrl)) {
+    try (SardineConnection conn = newConnection(createMockAndAddToDefault(SardineClient.class),
+        baseUrl)) {
       assertEquals("http://celements.com/main/dir/sub",
           conn.buildCompleteUrl(Paths.get("dir", "sub")).toExternalForm());
       assertEquals("http://celements.com/main/dir/sub",
@@ -63,16 +96,753 @@ public class SardineAdapterTest extends AbstractComponentTest {
     }
   }
 
+  @Test
+  public void test_get() throws Exception {
+    SardineClient sardineMock = createMockAndAddToDefault(SardineClient.class);
+    DavResource resource = createMockAndAddToDefault(DavResource.class);
+    expect(sardineMock.list("http://celements.com/dir/file.txt", 0)).andReturn(
+        Arrays.asList(resource));
+
+    replayDefault();
+    try (SardineConnection conn = newConnection(sardineMock, new URL("http://celements.com/"))) {
+      assertSame(resource, conn.get(Paths.get("dir", "file.txt")).get());
+    }
+    verifyDefault();
+  }
+
+  @Test
+  public void test_get_cached() throws Exception {
+    SardineClient sardineMock = createMockAndAddToDefault(SardineClient.class);
+    DavResource resource = createMockAndAddToDefault(DavResource.class);
+    expect(sardineMock.list("http://celements.com/dir/cached.txt", 0)).andReturn(
+        Arrays.asList(resource)).once();
+
+    replayDefault();
+    try (SardineConnection conn = newConnection(sardineMock, new URL("http://celements.com/"))) {
+      assertSame(resource, conn.get(Paths.get("dir", "cached.txt")).get());
+      assertSame(resource, conn.get(Paths.get("dir", "cached.txt")).get());
+    }
+    verifyDefault();
+  }
+
+  @Test
+  public void test_get_invalidatedByDelete() throws Exception {
+    SardineClient sardineMock = createMockAndAddToDefault(SardineClient.class);
+    DavResource resource = createMockAndAddToDefault(DavResource.class);
+    expect(sardineMock.list("http://celements.com/dir/deleted.txt", 0)).andReturn(
+        Arrays.asList(resource)).once();
+    sardineMock.delete("http://celements.com/dir/deleted.txt");
+    expect(sardineMock.list("http://celements.com/dir/deleted.txt", 0)).andThrow(
+        new SardineException("Not Found", 404, "Not Found")).once();
+
+    replayDefault();
+    try (SardineConnection conn = newConnection(sardineMock, new URL("http://celements.com/"))) {
+      assertTrue(conn.get(Paths.get("dir", "deleted.txt")).isPresent());
+      conn.delete(Paths.get("dir", "deleted.txt"));
+      assertFalse(conn.get(Paths.get("dir", "deleted.txt")).isPresent());
+    }
+    verifyDefault();
+  }
+
+  @Test
+  public void test_get_notExists() throws Exception {
+    SardineClient sardineMock = createMockAndAddToDefault(SardineClient.class);
+    expect(sardineMock.list("http://celements.com/dir/missing.txt", 0)).andThrow(
+        new SardineException("Not Found", 404, "Not Found"));
+
+    replayDefault();
+    try (SardineConnection conn = newConnection(sardineMock, new URL("http://celements.com/"))) {
+      assertFalse(conn.get(Paths.get("dir", "missing.txt")).isPresent());
+    }
+    verifyDefault();
+  }
+
+  @Test
+  public void test_list_props() throws Exception {
+    SardineClient sardineMock = createMockAndAddToDefault(SardineClient.class);
+    DavResource resource = createMockAndAddToDefault(DavResource.class);
+    expect(sardineMock.propfind("http://celements.com/props", 1, WebDavService.MINIMAL_PROPS))
+        .andReturn(Arrays.asList(resource)).once();
+    expect(sardineMock.list("http://celements.com/props")).andReturn(Arrays.asList(resource))
+        .once();
+    expect(resource.getHref()).andReturn(new URI("/props/")).anyTimes();
+
+    replayDefault();
+    try (SardineConnection conn = newConnection(sardineMock, new URL("http://celements.com/"))) {
+      assertEquals(1, conn.list(Paths.get("props"), WebDavService.MINIMAL_PROPS).size());
+      assertEquals(1, conn.list(Paths.get("props"), WebDavService.MINIMAL_PROPS).size());
+      assertEquals(1, conn.list(Paths.get("props")).size());
+      assertEquals(1, conn.list(Paths.get("props"), WebDavService.MINIMAL_PROPS).size());
+    }
+    verifyDefault();
+  }
+
+  @Test
+  public void test_walk_minimalProps() throws Exception {
+    SardineClient sardineMock = createMockAndAddToDefault(SardineClient.class);
+    DavResource resource = createMockAndAddToDefault(DavResource.class);
+    sardineMock.propfind(eq("http://celements.com/walk"), eq("1"), eq(
+        WebDavService.MINIMAL_PROPS), anyObject(DavResourceVisitor.class));
+    expectLastCall().andAnswer(() -> {
+      ((DavResourceVisitor) getCurrentArguments()[3]).visit(resource);
+      return null;
+    });
+
+    replayDefault();
+    List<DavResource> visited = new ArrayList<>();
+    try (SardineConnection conn = newConnection(sardineMock, new URL("http://celements.com/"))) {
+      conn.walk(Paths.get("walk"), 1, visited::add);
+    }
+    verifyDefault();
+    assertEquals(Arrays.asList(resource), visited);
+  }
+
+  @Test
+  public void test_walk_infiniteDepthRefused() throws Exception {
+    getConfigurationSource().setProperty(DavCircuitBreaker.CFG_FAILURE_THRESHOLD, 1);
+    SardineClient sardineMock = createMockAndAddToDefault(SardineClient.class);
+    sardineMock.propfind(eq("http://celements.com/walk"), eq("infinity"), eq(
+        WebDavService.MINIMAL_PROPS), anyObject(DavResourceVisitor.class));
+    expectLastCall().andThrow(new SardineException("Not Implemented", 501, "Not Implemented"))
+        .once();
+    sardineMock.propfind(eq("http://celements.com/walk"), eq("1"), eq(
+        WebDavService.MINIMAL_PROPS), anyObject(DavResourceVisitor.class));
+    expectLastCall().times(2);
+
+    replayDefault();
+    PooledSardine client = new PooledSardine("test", sardineMock);
+    URL baseUrl = new URL("http://celements.com/");
+    for (int i = 0; i < 2; i++) {
+      try (SardineConnection conn = sardineAdapter.new SardineConnection(client, baseUrl)) {
+        conn.walk(Paths.get("walk"), 2, resource -> {});
+      }
+    }
+    verifyDefault();
+    assertEquals(DavCircuitBreaker.State.CLOSED, sardineAdapter.getCircuitBreaker().getState(
+        "celements.com"));
+  }
+
+  @Test
+  public void test_zip_unsafePath() throws Exception {
+    SardineClient sardineMock = createMockAndAddToDefault(SardineClient.class);
+    Path filePath = Paths.get("dir", "..", "..", "evil.txt");
+
+    replayDefault();
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    DavBatchResult<Long> result;
+    try (SardineConnection conn = newConnection(sardineMock, new URL("http://celements.com/"))) {
+      result = conn.zip(Arrays.asList(filePath), out);
+    }
+    verifyDefault();
+    assertTrue(result.getSucceeded().isEmpty());
+    assertTrue(result.getErrors().get(filePath) instanceof ZipException);
+    try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+      assertNull(zip.getNextEntry());
+    }
+  }
+
+  @Test
+  public void test_getChanges_listingDiff() throws Exception {
+    SardineClient sardineMock = createMockAndAddToDefault(SardineClient.class);
+    DavResource dir = mockResource("/changes/", "\"d\"");
+    DavResource fileA = mockResource("/changes/a.txt", "\"a\"");
+    DavResource fileB = mockResource("/changes/b.txt", "\"b\"");
+    expect(sardineMock.report(eq("http://celements.com/changes"), eq(0), anyObject(
+        SyncCollectionReport.class))).andThrow(new SardineException("Not Implemented", 501,
+            "Not Implemented")).once();
+    expect(sardineMock.propfind("http://celements.com/changes", 1, WebDavService.MINIMAL_PROPS))
+        .andReturn(Arrays.asList(dir, fileA)).once();
+    expect(sardineMock.propfind("http://celements.com/changes", 1, WebDavService.MINIMAL_PROPS))
+        .andReturn(Arrays.asList(dir, fileB)).once();
+
+    replayDefault();
+    try (SardineConnection conn = newConnection(sardineMock, new URL("http://celements.com/"))) {
+      DavChanges initial = conn.getChanges(Paths.get("changes"), null);
+      assertEquals(Arrays.asList(fileA), initial.getChanged());
+      assertFalse(initial.isReset());
+      DavChanges changes = conn.getChanges(Paths.get("changes"), initial.getSyncToken());
+      assertEquals(Arrays.asList(fileB), changes.getChanged());
+      assertEquals(Arrays.asList(new URI("/changes/a.txt")), changes.getRemoved());
+    }
+    verifyDefault();
+  }
+
+  @Test
+  public void test_getChanges_syncCollectionRefusedPerClient() throws Exception {
+    getConfigurationSource().setProperty(DavCircuitBreaker.CFG_FAILURE_THRESHOLD, 1);
+    SardineClient sardineMock = createMockAndAddToDefault(SardineClient.class);
+    DavResource dir = mockResource("/changes/", "\"d\"");
+    expect(sardineMock.report(eq("http://celements.com/changes"), eq(0), anyObject(
+        SyncCollectionReport.class))).andThrow(new SardineException("Not Implemented", 501,
+            "Not Implemented")).once();
+    expect(sardineMock.propfind("http://celements.com/changes", 1, WebDavService.MINIMAL_PROPS))
+        .andReturn(Arrays.asList(dir)).times(2);
+
+    replayDefault();
+    PooledSardine client = new PooledSardine("test", sardineMock);
+    URL baseUrl = new URL("http://celements.com/");
+    for (int i = 0; i < 2; i++) {
+      try (SardineConnection conn = sardineAdapter.new SardineConnection(client, baseUrl)) {
+        conn.getChanges(Paths.get("changes"), null);
+      }
+    }
+    verifyDefault();
+    assertEquals(DavCircuitBreaker.State.CLOSED, sardineAdapter.getCircuitBreaker().getState(
+        "celements.com"));
+  }
+
+  @Test
+  public void test_load_stream() throws Exception {
+    SardineClient sardineMock = createMockAndAddToDefault(SardineClient.class);
+    expect(sardineMock.get("http://celements.com/dir/file.txt")).andReturn(
+        new ContentLengthInputStream(new ByteArrayInputStream(CONTENT), (long) CONTENT.length));
+
+    replayDefault();
+    try (SardineConnection conn = newConnection(sardineMock, new URL("http://celements.com/"))) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      assertEquals(CONTENT.length, conn.load(Paths.get("dir", "file.txt"), out));
+      assertArrayEquals(CONTENT, out.toByteArray());
+    }
+    verifyDefault();
+  }
+
+  @Test
+  public void test_load_returnsCopyOfCachedContent() throws Exception {
+    String url = "http://celements.com/dir/cached.txt";
+    SardineClient sardineMock = createMockAndAddToDefault(SardineClient.class);
+    expect(sardineMock.getConditional(eq(url), isNull(String.class), isNull(String.class),
+        EasyMock.<ResponseHandler<DavContentCache.Entry>>anyObject())).andReturn(
+            new DavContentCache.Entry("\"1\"", null, CONTENT.clone()));
+    Capture<ResponseHandler<DavContentCache.Entry>> handler = newCapture();
+    expect(sardineMock.getConditional(eq(url), eq("\"1\""), isNull(String.class), capture(
+        handler))).andAnswer(() -> handler.getValue().handleResponse(new BasicHttpResponse(
+            HttpVersion.HTTP_1_1, HttpStatus.SC_NOT_MODIFIED, "Not Modified")));
+
+    replayDefault();
+    try (SardineConnection conn = newConnection(sardineMock, new URL("http://celements.com/"))) {
+      byte[] content = conn.load(Paths.get("dir", "cached.txt"));
+      assertArrayEquals(CONTENT, content);
+      content[0] = 'X';
+      assertArrayEquals(CONTENT, conn.load(Paths.get("dir", "cached.txt")));
+    }
+    verifyDefault();
+  }
+
+  @Test
+  public void test_loadAsStream_notFound() throws Exception {
+    SardineClient sardineMock = createMockAndAddToDefault(SardineClient.class);
+    expect(sardineMock.get("http://celements.com/dir/missing.txt")).andThrow(
+        new SardineException("Not Found", 404, "Not Found"));
+
+    replayDefault();
+    try (SardineConnection conn = newConnection(sardineMock, new URL("http://celements.com/"))) {
+      conn.loadAsStream(Paths.get("dir", "missing.txt"));
+      fail("expecting DavResourceAccessException");
+    } catch (DavResourceAccessException exc) {
+      assertEquals("http://celements.com/dir/missing.txt", exc.getUrl().toExternalForm());
+    }
+    verifyDefault();
+  }
+
+  @Test
+  public void test_createOrUpdate_stream() throws Exception {
+    SardineClient sardineMock = createMockAndAddToDefault(SardineClient.class);
+    ByteArrayOutputStream sent = new ByteArrayOutputStream();
+    sardineMock.put(eq("http://celements.com/dir/file.txt"), anyObject(InputStream.class),
+        isNull(String.class), eq(true), eq((long) CONTENT.length));
+    expectLastCall().andAnswer(() -> {
+      IOUtils.copy((InputStream) getCurrentArguments()[1], sent);
+      return null;
+    });
+
+    replayDefault();
+    try (SardineConnection conn = newConnection(sardineMock, new URL("http://celements.com/"))) {
+      conn.createOrUpdate(Paths.get("dir", "file.txt"), new ByteArrayInputStream(CONTENT),
+          CONTENT.length);
+    }
+    verifyDefault();
+    assertArrayEquals(CONTENT, sent.toByteArray());
+  }
+
+  @Test
+  public void test_createOrUpdate_stream_unknownLength() throws Exception {
+    SardineClient sardineMock = createMockAndAddToDefault(SardineClient.class);
+    sardineMock.put(eq("http://celements.com/dir/file.txt"), anyObject(InputStream.class),
+        isNull(String.class), eq(true));
+
+    replayDefault();
+    try (SardineConnection conn = newConnection(sardineMock, new URL("http://celements.com/"))) {
+      conn.createOrUpdate(Paths.get("dir", "file.txt"), new ByteArrayInputStream(CONTENT), -1);
+    }
+    verifyDefault();
+  }
+
+  @Test
+  public void test_execute_localFailuresNotCounted() throws Exception {
+    getConfigurationSource().setProperty(DavCircuitBreaker.CFG_FAILURE_THRESHOLD, 1);
+    SardineClient sardineMock = createMockAndAddToDefault(SardineClient.class);
+    expect(sardineMock.get("http://celements.com/dir/file.txt")).andThrow(
+        new ConnectionPoolTimeoutException("pool exhausted"));
+    IOException readExc = new IOException("unreadable");
+    sardineMock.put(eq("http://celements.com/dir/file.txt"), anyObject(InputStream.class),
+        isNull(String.class), eq(true));
+    expectLastCall().andAnswer(() -> IOUtils.toByteArray((InputStream) getCurrentArguments()[1]));
+    expect(sardineMock.get("http://celements.com/dir/file.txt")).andThrow(
+        new IllegalStateException());
+    sardineMock.put(eq("http://celements.com/dir/file.txt"), anyObject(InputStream.class),
+        isNull(String.class), eq(true));
+    expectLastCall().andThrow(new ConnectException("refused"));
+
+    replayDefault();
+    try (SardineConnection conn = newConnection(sardineMock, new URL("http://celements.com/"))) {
+      try {
+        conn.loadAsStream(Paths.get("dir", "file.txt"));
+        fail("expecting ConnectionPoolTimeoutException");
+      } catch (ConnectionPoolTimeoutException exc) {
+        // expected
+      }
+      try {
+        conn.createOrUpdate(Paths.get("dir", "file.txt"), new InputStream() {
+
+          @Override
+          public int read() throws IOException {
+            throw readExc;
+          }
+        }, -1);
+        fail("expecting IOException");
+      } catch (IOException exc) {
+        assertSame(readExc, exc);
+      }
+      try {
+        conn.loadAsStream(Paths.get("dir", "file.txt"));
+        fail("expecting IllegalStateException");
+      } catch (IllegalStateException exc) {
+        // expected
+      }
+      assertFalse(sardineAdapter.getCircuitBreaker().isOpen("celements.com"));
+      try {
+        conn.createOrUpdate(Paths.get("dir", "file.txt"), new ByteArrayInputStream(CONTENT), -1);
+        fail("expecting ConnectException");
+      } catch (ConnectException exc) {
+        // expected
+      }
+      assertTrue(sardineAdapter.getCircuitBreaker().isOpen("celements.com"));
+    }
+    verifyDefault();
+  }
+
+  @Test
+  public void test_execute_notImplementedNotCounted() throws Exception {
+    getConfigurationSource().setProperty(DavCircuitBreaker.CFG_FAILURE_THRESHOLD, 1);
+    SardineClient sardineMock = createMockAndAddToDefault(SardineClient.class);
+    expect(sardineMock.get("http://celements.com/dir/file.txt")).andThrow(
+        new SardineException("Not Implemented", 501, "Not Implemented"));
+    expect(sardineMock.get("http://celements.com/dir/file.txt")).andThrow(
+        new SardineException("Internal Server Error", 500, "Internal Server Error"));
+
+    replayDefault();
+    try (SardineConnection conn = newConnection(sardineMock, new URL("http://celements.com/"))) {
+      try {
+        conn.loadAsStream(Paths.get("dir", "file.txt"));
+        fail("expecting SardineException");
+      } catch (SardineException exc) {
+        assertEquals(501, exc.getStatusCode());
+      }
+      assertFalse(sardineAdapter.getCircuitBreaker().isOpen("celements.com"));
+      try {
+        conn.loadAsStream(Paths.get("dir", "file.txt"));
+        fail("expecting SardineException");
+      } catch (SardineException exc) {
+        assertEquals(500, exc.getStatusCode());
+      }
+      try {
+        conn.loadAsStream(Paths.get("dir", "file.txt"));
+        fail("expecting IOException");
+      } catch (IOException exc) {
+        assertTrue(exc.getCause() instanceof DavCircuitOpenException);
+      }
+    }
+    verifyDefault();
+  }
+
+  @Test
+  public void test_create() throws Exception {
+    SardineClient sardineMock = createMockAndAddToDefault(SardineClient.class);
+    Capture<List<Header>> headers = newCapture();
+    ByteArrayOutputStream sent = new ByteArrayOutputStream();
+    sardineMock.put(eq("http://celements.com/dir/file.txt"), anyObject(HttpEntity.class),
+        capture(headers));
+    expectLastCall().andAnswer(() -> {
+      ((HttpEntity) getCurrentArguments()[1]).writeTo(sent);
+      return null;
+    });
+
+    replayDefault();
+    try (SardineConnection conn = newConnection(sardineMock, new URL("http://celements.com/"))) {
+      conn.create(Paths.get("dir", "file.txt"), CONTENT);
+    }
+    verifyDefault();
+    assertArrayEquals(CONTENT, sent.toByteArray());
+    assertTrue(headers.getValue().stream().anyMatch(header -> header.getName().equals(
+        "If-None-Match") && header.getValue().equals("*")));
+  }
+
+  @Test
+  public void test_create_stream_alreadyExists() throws Exception {
+    SardineClient sardineMock = createMockAndAddToDefault(SardineClient.class);
+    sardineMock.put(eq("http://celements.com/dir/file.txt"), anyObject(HttpEntity.class),
+        EasyMock.<List<Header>>anyObject());
+    expectLastCall().andThrow(new SardineException("Precondition Failed", 412,
+        "Precondition Failed"));
+
+    replayDefault();
+    try (SardineConnection conn = newConnection(sardineMock, new URL("http://celements.com/"))) {
+      conn.create(Paths.get("dir", "file.txt"), new ByteArrayInputStream(CONTENT),
+          CONTENT.length);
+      fail("expecting DavResourceAlreadyExistsException");
+    } catch (DavResourceAlreadyExistsException exc) {
+      assertEquals("http://celements.com/dir/file.txt", exc.getUrl().toExternalForm());
+    }
+    verifyDefault();
+  }
+
+  @Test
+  public void test_update_stream_notExists() throws Exception {
+    SardineClient sardineMock = createMockAndAddToDefault(SardineClient.class);
+    expect(sardineMock.list("http://celements.com/dir/file.txt", 0)).andThrow(
+        new SardineException("Not Found", 404, "Not Found"));
+
+    replayDefault();
+    try (SardineConnection conn = newConnection(sardineMock, new URL("http://celements.com/"))) {
+      conn.update(Paths.get("dir", "file.txt"), new ByteArrayInputStream(CONTENT),
+          CONTENT.length);
+      fail("expecting DavFileNotExistsException");
+    } catch (DavFileNotExistsException exc) {
+      assertEquals("http://celements.com/dir/file.txt", exc.getUrl().toExternalForm());
+    }
+    verifyDefault();
+  }
+
+  @Test
+  public void test_createDirectory() throws Exception {
+    SardineClient sardineMock = createMockAndAddToDefault(SardineClient.class);
+    sardineMock.createDirectory("http://celements.com/a/b/c");
+    expectLastCall().andThrow(new SardineException("Conflict", 409, "Conflict"));
+    sardineMock.createDirectory("http://celements.com/a/b");
+    expectLastCall().andThrow(new SardineException("Conflict", 409, "Conflict"));
+    sardineMock.createDirectory("http://celements.com/a");
+    expectLastCall().andThrow(new SardineException("Method Not Allowed", 405, "Not Allowed"));
+    sardineMock.createDirectory("http://celements.com/a/b");
+    sardineMock.createDirectory("http://celements.com/a/b/c");
+    sardineMock.createDirectory("http://celements.com/a/b/d");
+
+    replayDefault();
+    try (SardineConnection conn = newConnection(sardineMock, new URL("http://celements.com/"))) {
+      conn.createDirectory(Paths.get("a", "b", "c"));
+      conn.createDirectory(Paths.get("a", "b", "c"));
+      conn.createDirectory(Paths.get("a", "b"));
+      conn.createDirectory(Paths.get("a", "b", "d"));
+    }
+    verifyDefault();
+  }
+
+  @Test
+  public void test_move_alreadyExists() throws Exception {
+    SardineClient sardineMock = createMockAndAddToDefault(SardineClient.class);
+    sardineMock.move("http://celements.com/dir/src.txt", "http://celements.com/dir/dst.txt",
+        false);
+    expectLastCall().andThrow(new SardineException("Precondition Failed", 412, "Failed"));
+
+    replayDefault();
+    try (SardineConnection conn = newConnection(sardineMock, new URL("http://celements.com/"))) {
+      conn.move(Paths.get("dir", "src.txt"), Paths.get("dir", "dst.txt"), false);
+      fail("expecting DavResourceAlreadyExistsException");
+    } catch (DavResourceAlreadyExistsException exc) {
+      assertEquals("http://celements.com/dir/dst.txt", exc.getUrl().toExternalForm());
+    }
+    verifyDefault();
+  }
+
+  @Test
+  public void test_deleteAll() throws Exception {
+    SardineClient sardineMock = createMockAndAddToDefault(SardineClient.class);
+    sardineMock.delete("http://celements.com/dir/a.txt");
+    sardineMock.delete("http://celements.com/dir/b.txt");
+    expectLastCall().andThrow(new SardineException("Forbidden", 403, "Forbidden"));
+
+    replayDefault();
+    try (SardineConnection conn = newConnection(sardineMock, new URL("http://celements.com/"))) {
+      DavBatchResult<Void> result = conn.deleteAll(Arrays.asList(Paths.get("dir", "a.txt"),
+          Paths.get("dir", "b.txt")));
+      assertEquals(ImmutableSet.of(Paths.get("dir", "a.txt")), result.getSucceeded());
+      assertTrue(result.hasErrors());
+      assertTrue(result.getErrors().get(Paths.get("dir",
+          "b.txt")) instanceof DavResourceAccessException);
+    }
+    verifyDefault();
+  }
+
+  @Test
+  public void test_delete_retried() throws Exception {
+    SardineClient sardineMock = createMockAndAddToDefault(SardineClient.class);
+    sardineMock.delete("http://celements.com/dir/a.txt");
+    expectLastCall().andThrow(new SardineClient.RetryAfterException(new SardineException(
+        "Service Unavailable", 503, "Service Unavailable"), 0));
+    sardineMock.delete("http://celements.com/dir/a.txt");
+    expectLastCall().andThrow(new SardineException("Not Found", 404, "Not Found"));
+
+    replayDefault();
+    try (SardineConnection conn = newConnection(sardineMock, new URL("http://celements.com/"))) {
+      conn.delete(Paths.get("dir", "a.txt"));
+    }
+    verifyDefault();
+  }
+
+  @Test
+  public void test_createOrUpdate_chunkedResumed() throws Exception {
+    getConfigurationSource().setProperty(SardineAdapter.CFG_UPLOAD_CHUNK_SIZE, 10);
+    String dstUrl = "http://celements.com/remote.php/dav/files/user/large.bin";
+    String transferPrefix = "http://celements.com/remote.php/dav/uploads/user/celements-";
+    SardineClient sardineMock = createMockAndAddToDefault(SardineClient.class);
+    DavResource transferDir = createMockAndAddToDefault(DavResource.class);
+    expect(transferDir.isDirectory()).andReturn(true).anyTimes();
+    DavResource uploadedPart = createMockAndAddToDefault(DavResource.class);
+    expect(uploadedPart.isDirectory()).andReturn(false).anyTimes();
+    expect(uploadedPart.getName()).andReturn("00001").anyTimes();
+    expect(uploadedPart.getContentLength()).andReturn(10L).anyTimes();
+    expect(sardineMock.propfind(startsWith(transferPrefix), eq(1), eq(
+        WebDavService.MINIMAL_PROPS))).andReturn(Arrays.asList(transferDir, uploadedPart));
+    sardineMock.put(and(startsWith(transferPrefix), endsWith("/00002")),
+        anyObject(HttpEntity.class), EasyMock.<List<Header>>anyObject());
+    sardineMock.put(and(startsWith(transferPrefix), endsWith("/00003")),
+        anyObject(HttpEntity.class), EasyMock.<List<Header>>anyObject());
+    expect(sardineMock.move(and(startsWith(transferPrefix), endsWith("/.file")), eq(dstUrl),
+        eq(true), EasyMock.<List<Header>>anyObject(),
+        EasyMock.<ResponseHandler<String>>anyObject())).andReturn("\"e1\"");
+
+    replayDefault();
+    try (SardineConnection conn = newConnection(sardineMock, new URL(
+        "http://celements.com/remote.php/dav/files/user/"))) {
+      conn.createOrUpdate(Paths.get("large.bin"), ByteSource.wrap(new byte[25]));
+    }
+    verifyDefault();
+  }
+
+  @Test
+  public void test_createOrUpdate_chunked_keyedByContent() throws Exception {
+    getConfigurationSource().setProperty(SardineAdapter.CFG_UPLOAD_CHUNK_SIZE, 10);
+    String transferPrefix = "http://celements.com/remote.php/dav/uploads/user/celements-";
+    SardineClient sardineMock = createMockAndAddToDefault(SardineClient.class);
+    DavResource transferDir = createMockAndAddToDefault(DavResource.class);
+    expect(transferDir.isDirectory()).andReturn(true).anyTimes();
+    Capture<String> transferUrls = newCapture(CaptureType.ALL);
+    expect(sardineMock.propfind(and(startsWith(transferPrefix), capture(transferUrls)), eq(1),
+        eq(WebDavService.MINIMAL_PROPS))).andReturn(Arrays.asList(transferDir)).times(2);
+    sardineMock.put(startsWith(transferPrefix), anyObject(HttpEntity.class),
+        EasyMock.<List<Header>>anyObject());
+    expectLastCall().times(6);
+    expect(sardineMock.move(startsWith(transferPrefix), anyObject(String.class), eq(true),
+        EasyMock.<List<Header>>anyObject(), EasyMock.<ResponseHandler<String>>anyObject()))
+            .andReturn(null).times(2);
+
+    replayDefault();
+    byte[] content = new byte[25];
+    try (SardineConnection conn = newConnection(sardineMock, new URL(
+        "http://celements.com/remote.php/dav/files/user/"))) {
+      conn.createOrUpdate(Paths.get("large.bin"), ByteSource.wrap(content));
+      content[20] = 1; // same size and first part, different content
+      conn.createOrUpdate(Paths.get("large.bin"), ByteSource.wrap(content));
+    }
+    verifyDefault();
+    assertNotEquals(transferUrls.getValues().get(0), transferUrls.getValues().get(1));
+  }
+
+  @Test
+  public void test_createOrUpdateIfChanged_chunked() throws Exception {
+    getConfigurationSource().setProperty(SardineAdapter.CFG_UPLOAD_CHUNK_SIZE, 10);
+    String dstUrl = "http://celements.com/remote.php/dav/files/user/large.bin";
+    String transferPrefix = "http://celements.com/remote.php/dav/uploads/user/celements-";
+    ByteSource content = ByteSource.wrap(new byte[25]);
+    SardineClient sardineMock = createMockAndAddToDefault(SardineClient.class);
+    expect(sardineMock.propfind(dstUrl, 0, SardineAdapter.CHECKSUM_PROPS)).andThrow(
+        new SardineException("Not Found", 404, "Not Found"));
+    expect(sardineMock.propfind(startsWith(transferPrefix), eq(1), eq(
+        WebDavService.MINIMAL_PROPS))).andThrow(new SardineException("Not Found", 404,
+            "Not Found"));
+    sardineMock.createDirectory(startsWith(transferPrefix), EasyMock.<List<Header>>anyObject());
+    sardineMock.put(startsWith(transferPrefix), anyObject(HttpEntity.class),
+        EasyMock.<List<Header>>anyObject());
+    expectLastCall().times(3);
+    expect(sardineMock.move(and(startsWith(transferPrefix), endsWith("/.file")), eq(dstUrl),
+        eq(true), EasyMock.<List<Header>>anyObject(),
+        EasyMock.<ResponseHandler<String>>anyObject())).andReturn("\"e1\"");
+    DavResource uploaded = createMockAndAddToDefault(DavResource.class);
+    expect(uploaded.isDirectory()).andReturn(false).anyTimes();
+    expect(uploaded.getContentLength()).andReturn(content.size()).anyTimes();
+    expect(uploaded.getCustomPropsNS()).andReturn(Collections.emptyMap()).anyTimes();
+    expect(uploaded.getEtag()).andReturn("\"e1\"").anyTimes();
+    expect(sardineMock.propfind(dstUrl, 0, SardineAdapter.CHECKSUM_PROPS)).andReturn(
+        Arrays.asList(uploaded));
+
+    replayDefault();
+    try (SardineConnection conn = newConnection(sardineMock, new URL(
+        "http://celements.com/remote.php/dav/files/user/"))) {
+      assertTrue(conn.createOrUpdateIfChanged(Paths.get("large.bin"), content));
+      assertFalse(conn.createOrUpdateIfChanged(Paths.get("large.bin"), content));
+    }
+    verifyDefault();
+  }
+
+  @Test
+  public void test_createOrUpdate_chunkedRefusedPerClient() throws Exception {
+    getConfigurationSource().setProperty(SardineAdapter.CFG_UPLOAD_CHUNK_SIZE, 10);
+    String dstUrl = "http://celements.com/remote.php/dav/files/user/large.bin";
+    String transferPrefix = "http://celements.com/remote.php/dav/uploads/user/celements-";
+    SardineClient sardineMock = createMockAndAddToDefault(SardineClient.class);
+    expect(sardineMock.propfind(startsWith(transferPrefix), eq(1), eq(
+        WebDavService.MINIMAL_PROPS))).andThrow(new SardineException("Not Found", 404,
+            "Not Found")).once();
+    sardineMock.createDirectory(startsWith(transferPrefix), EasyMock.<List<Header>>anyObject());
+    expectLastCall().andThrow(new SardineException("Forbidden", 403, "Forbidden")).once();
+    sardineMock.put(eq(dstUrl), anyObject(InputStream.class), isNull(String.class), eq(true),
+        eq(25L));
+    expectLastCall().times(2);
+
+    replayDefault();
+    PooledSardine client = new PooledSardine("test", sardineMock);
+    URL baseUrl = new URL("http://celements.com/remote.php/dav/files/user/");
+    for (int i = 0; i < 2; i++) {
+      try (SardineConnection conn = sardineAdapter.new SardineConnection(client, baseUrl)) {
+        conn.createOrUpdate(Paths.get("large.bin"), ByteSource.wrap(new byte[25]));
+      }
+    }
+    verifyDefault();
+  }
+
+  @Test
+  public void test_createOrUpdate_byteSource_retried() throws Exception {
+    getConfigurationSource().setProperty(SardineAdapter.CFG_UPLOAD_CHUNK_SIZE, 10);
+    byte[] content = new byte[25];
+    List<byte[]> sent = new ArrayList<>();
+    SardineClient sardineMock = createMockAndAddToDefault(SardineClient.class);
+    sardineMock.put(eq("http://celements.com/dir/large.bin"), anyObject(InputStream.class),
+        isNull(String.class), eq(true), eq((long) content.length));
+    expectLastCall().andAnswer(() -> {
+      sent.add(IOUtils.toByteArray((InputStream) getCurrentArguments()[1]));
+      throw new SocketException("Connection reset");
+    }).andAnswer(() -> {
+      sent.add(IOUtils.toByteArray((InputStream) getCurrentArguments()[1]));
+      return null;
+    });
+
+    replayDefault();
+    try (SardineConnection conn = newConnection(sardineMock, new URL("http://celements.com/"))) {
+      conn.createOrUpdate(Paths.get("dir", "large.bin"), ByteSource.wrap(content));
+    }
+    verifyDefault();
+    assertEquals(2, sent.size());
+    assertArrayEquals(content, sent.get(0));
+    assertArrayEquals(content, sent.get(1));
+  }
+
+  @Test
+  public void test_createOrUpdateIfChanged() throws Exception {
+    String url = "http://celements.com/dir/export.csv";
+    ByteSource content = ByteSource.wrap("a;b;c".getBytes(StandardCharsets.UTF_8));
+    SardineClient sardineMock = createMockAndAddToDefault(SardineClient.class);
+    expect(sardineMock.propfind(url, 0, SardineAdapter.CHECKSUM_PROPS)).andThrow(
+        new SardineException("Not Found", 404, "Not Found"));
+    expect(sardineMock.put(eq(url), anyObject(HttpEntity.class),
+        EasyMock.<List<Header>>anyObject(), EasyMock.<ResponseHandler<String>>anyObject()))
+            .andReturn("\"e1\"");
+    DavResource uploaded = createMockAndAddToDefault(DavResource.class);
+    expect(uploaded.isDirectory()).andReturn(false).anyTimes();
+    expect(uploaded.getContentLength()).andReturn(content.size()).anyTimes();
+    expect(uploaded.getCustomPropsNS()).andReturn(Collections.emptyMap()).anyTimes();
+    expect(uploaded.getEtag()).andReturn("\"e1\"").anyTimes();
+    expect(sardineMock.propfind(url, 0, SardineAdapter.CHECKSUM_PROPS)).andReturn(
+        Arrays.asList(uploaded));
+
+    replayDefault();
+    try (SardineConnection conn = newConnection(sardineMock, new URL("http://celements.com/"))) {
+      assertTrue(conn.createOrUpdateIfChanged(Paths.get("dir", "export.csv"), content));
+      assertFalse(conn.createOrUpdateIfChanged(Paths.get("dir", "export.csv"), content));
+    }
+    verifyDefault();
+  }
+
+  @Test
+  public void test_createOrUpdateIfChanged_remoteChecksum() throws Exception {
+    String url = "http://celements.com/dir/export.csv";
+    ByteSource content = ByteSource.wrap("a;b;c".getBytes(StandardCharsets.UTF_8));
+    SardineClient sardineMock = createMockAndAddToDefault(SardineClient.class);
+    DavResource remote = createMockAndAddToDefault(DavResource.class);
+    expect(remote.isDirectory()).andReturn(false).anyTimes();
+    expect(remote.getContentLength()).andReturn(content.size()).anyTimes();
+    expect(remote.getCustomPropsNS()).andReturn(ImmutableMap.of(SardineAdapter.OC_CHECKSUMS,
+        "SHA1:" + content.hash(Hashing.sha1()) + " MD5:123")).anyTimes();
+    expect(sardineMock.propfind(url, 0, SardineAdapter.CHECKSUM_PROPS)).andReturn(
+        Arrays.asList(remote));
+
+    replayDefault();
+    try (SardineConnection conn = newConnection(sardineMock, new URL("http://celements.com/"))) {
+      assertFalse(conn.createOrUpdateIfChanged(Paths.get("dir", "export.csv"), content));
+    }
+    verifyDefault();
+  }
+
   @Test
   public void test_connect() throws Exception {
     RemoteLogin remoteLogin = getNextcloudRemoteLogin();
-    Sardine sardineMock = createMockAndAddToDefault(Sardine.class);
-    Utils.getComponent(Execution.class).getContext()
-        .setProperty(sardineAdapter.getSardineExecutionContextKey(remoteLogin), sardineMock);
+    SardineClient sardineMock = createMockAndAddToDefault(SardineClient.class);
     expect(sardineMock.exists(remoteLogin.getUrl())).andReturn(true);
 
     replayDefault();
-    assertNotNull(sardineAdapter.connect(remoteLogin));
+    PooledSardine client = sardineAdapter.getSardinePool().lease(
+        sardineAdapter.getSardinePoolKey(remoteLogin),
+        () -> new PooledSardine("test", sardineMock));
+    client.release();
+    try (SardineConnection conn = sardineAdapter.connect(remoteLogin)) {
+      assertNotNull(conn);
+    }
+    verifyDefault();
+  }
+
+  @Test
+  public void test_close_releasesToPool() throws Exception {
+    RemoteLogin remoteLogin = getNextcloudRemoteLogin();
+    SardineClient sardineMock = createMockAndAddToDefault(SardineClient.class);
+    expect(sardineMock.exists(remoteLogin.getUrl())).andReturn(true).once();
+
+    replayDefault();
+    sardineAdapter.getSardinePool().lease(sardineAdapter.getSardinePoolKey(remoteLogin),
+        () -> new PooledSardine("test", sardineMock)).release();
+    sardineAdapter.connect(remoteLogin).close();
+    try (SardineConnection conn = sardineAdapter.connect(remoteLogin)) {
+      assertNotNull(conn);
+    }
+    verifyDefault();
+  }
+
+  @Test
+  public void test_connect_probesAfterConnectionFailure() throws Exception {
+    RemoteLogin remoteLogin = getNextcloudRemoteLogin();
+    SardineClient sardineMock = createMockAndAddToDefault(SardineClient.class);
+    expect(sardineMock.exists(remoteLogin.getUrl())).andReturn(true).times(2);
+    expect(sardineMock.list(remoteLogin.getUrl() + "/dir")).andThrow(new ConnectException());
+
+    replayDefault();
+    sardineAdapter.getSardinePool().lease(sardineAdapter.getSardinePoolKey(remoteLogin),
+        () -> new PooledSardine("test", sardineMock)).release();
+    try (SardineConnection conn = sardineAdapter.connect(remoteLogin)) {
+      conn.list(Paths.get("dir"));
+      fail("expecting ConnectException");
+    } catch (ConnectException exc) {
+      // expected
+    }
+    try (SardineConnection conn = sardineAdapter.connect(remoteLogin)) {
+      assertNotNull(conn);
+    }
     verifyDefault();
   }
 
@@ -137,6 +907,17 @@ public class SardineAdapterTest extends AbstractComponentTest {
     verifyDefault();
   }
 
+  private DavResource mockResource(String href, String etag) throws Exception {
+    DavResource resource = createMockAndAddToDefault(DavResource.class);
+    expect(resource.getHref()).andReturn(new URI(href)).anyTimes();
+    expect(resource.getEtag()).andReturn(etag).anyTimes();
+    return resource;
+  }
+
+  private SardineConnection newConnection(SardineClient sardine, URL baseUrl) throws Exception {
+    return sardineAdapter.new SardineConnection(new PooledSardine("test", sardine), baseUrl);
+  }
+
   private RemoteLogin getNextcloudRemoteLogin() throws MalformedURLException {
     RemoteLogin remoteLogin = new RemoteLogin();
     remoteLogin.setUsername("Testing");
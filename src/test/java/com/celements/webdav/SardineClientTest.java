@@ -0,0 +1,55 @@
+package com.celements.webdav;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SardineClientTest {
+
+  private final AtomicReference<HttpRequestBase> executed = new AtomicReference<>();
+  private SardineClient client;
+
+  @Before
+  public void prepareTest() throws Exception {
+    client = new SardineClient(HttpClientBuilder.create(), "user", "pass") {
+
+      @Override
+      public <T> T execute(HttpRequestBase request, ResponseHandler<T> responseHandler)
+          throws IOException {
+        executed.set(request);
+        return null;
+      }
+    };
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    client.shutdown();
+  }
+
+  @Test
+  public void test_propfind_props() throws Exception {
+    client.propfind("http://celements.com/dir", "1", WebDavService.MINIMAL_PROPS, resource -> {});
+    HttpRequestBase request = executed.get();
+    assertEquals("PROPFIND", request.getMethod());
+    assertEquals("1", request.getFirstHeader("Depth").getValue());
+    String body = IOUtils.toString(((HttpEntityEnclosingRequest) request).getEntity()
+        .getContent(), StandardCharsets.UTF_8);
+    assertFalse(body, body.contains("allprop"));
+    assertTrue(body, body.contains("getetag"));
+    assertTrue(body, body.contains("resourcetype"));
+    assertFalse(body, body.contains("quota"));
+  }
+
+}
@@ -0,0 +1,30 @@
+package com.celements.webdav;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.celements.auth.RemoteLogin;
+
+public class SardinePoolTest {
+
+  @Test
+  public void test_getKey() {
+    RemoteLogin remoteLogin = newRemoteLogin("user", "secret");
+    String key = SardinePool.getKey(remoteLogin);
+    assertEquals(key, SardinePool.getKey(newRemoteLogin("user", "secret")));
+    assertFalse(key.contains("secret"));
+    assertNotEquals(key, SardinePool.getKey(newRemoteLogin("user", "changed")));
+    assertNotEquals(key, SardinePool.getKey(newRemoteLogin("other", "secret")));
+    assertNotEquals(key, SardinePool.getKey(newRemoteLogin("user", null)));
+  }
+
+  private RemoteLogin newRemoteLogin(String username, String password) {
+    RemoteLogin remoteLogin = new RemoteLogin();
+    remoteLogin.setUrl("https://dav.example.org/remote.php/webdav");
+    remoteLogin.setUsername(username);
+    remoteLogin.setPassword(password);
+    return remoteLogin;
+  }
+
+}
@@ -0,0 +1,277 @@
+package com.celements.webdav;
+
+import static com.celements.common.test.CelementsTestUtils.*;
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+
+import org.easymock.Capture;
+import org.easymock.CaptureType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.script.service.ScriptService;
+
+import com.celements.auth.RemoteLogin;
+import com.celements.common.test.AbstractComponentTest;
+import com.celements.model.context.ModelContext;
+import com.celements.rights.access.EAccessLevel;
+import com.celements.rights.access.IRightsAccessFacadeRole;
+import com.celements.webdav.WebDavService.WebDavConnection;
+import com.celements.webdav.sync.WebDavSyncService;
+import com.github.sardine.DavResource;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.ByteSource;
+import com.xpn.xwiki.XWikiException;
+import com.xpn.xwiki.api.Attachment;
+import com.xpn.xwiki.web.Utils;
+import com.xpn.xwiki.web.XWikiRequest;
+import com.xpn.xwiki.web.XWikiResponse;
+
+public class WebDavScriptServiceTest extends AbstractComponentTest {
+
+  private static final String FILE_PATH = "dir/file.txt";
+  private static final byte[] CONTENT = "content".getBytes(StandardCharsets.UTF_8);
+
+  private final Path path = Paths.get(FILE_PATH);
+  private final Date modified = new Date(1500000000000L);
+  private WebDavScriptService scriptService;
+  private ExecutionContext execContext;
+  private WebDavConnection webDavMock;
+  private XWikiRequest requestMock;
+  private XWikiResponse responseMock;
+  private ByteArrayOutputStream responseContent;
+
+  @Before
+  public void prepareTest() throws Exception {
+    WebDavService webDavServiceMock = registerComponentMock(WebDavService.class);
+    IRightsAccessFacadeRole rightsAccessMock = registerComponentMock(
+        IRightsAccessFacadeRole.class);
+    ModelContext contextMock = registerComponentMock(ModelContext.class);
+    Execution executionMock = registerComponentMock(Execution.class);
+    registerComponentMock(WebDavSyncService.class);
+    RemoteLogin remoteLoginMock = createMockAndAddToDefault(RemoteLogin.class);
+    DocumentReference cfgDocRef = new DocumentReference("wiki", "WebDAV", "Config");
+    expect(remoteLoginMock.getDocumentReference()).andReturn(cfgDocRef).anyTimes();
+    expect(webDavServiceMock.getConfiguredRemoteLogin()).andReturn(remoteLoginMock).anyTimes();
+    expect(rightsAccessMock.hasAccessLevel(cfgDocRef, EAccessLevel.VIEW)).andReturn(true)
+        .anyTimes();
+    execContext = new ExecutionContext();
+    expect(executionMock.getContext()).andReturn(execContext).anyTimes();
+    webDavMock = createMockAndAddToDefault(WebDavConnection.class);
+    webDavMock.close();
+    expectLastCall().anyTimes();
+    expect(webDavServiceMock.connect(remoteLoginMock)).andReturn(webDavMock).anyTimes();
+    requestMock = createMockAndAddToDefault(XWikiRequest.class);
+    responseMock = createMockAndAddToDefault(XWikiResponse.class);
+    expect(contextMock.getRequest()).andReturn(Optional.of(requestMock)).anyTimes();
+    expect(contextMock.getResponse()).andReturn(Optional.of(responseMock)).anyTimes();
+    responseContent = new ByteArrayOutputStream();
+    expect(responseMock.getOutputStream()).andReturn(new ServletOutputStream() {
+
+      @Override
+      public void write(int b) throws IOException {
+        responseContent.write(b);
+      }
+    }).anyTimes();
+    scriptService = (WebDavScriptService) Utils.getComponent(ScriptService.class, "webdav");
+  }
+
+  @After
+  public void tearDown() {
+    RequestConnections.release(execContext);
+  }
+
+  @Test
+  public void test_download_notModified_ifNoneMatch() throws Exception {
+    expectResource("abc");
+    expect(requestMock.getHeader("If-None-Match")).andReturn("\"other\", W/\"abc\"");
+    responseMock.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+
+    replayDefault();
+    scriptService.download(FILE_PATH);
+    verifyDefault();
+    assertEquals(0, responseContent.size());
+  }
+
+  @Test
+  public void test_download_notModified_ifNoneMatch_anyWithoutEtag() throws Exception {
+    expectResource(null);
+    expect(requestMock.getHeader("If-None-Match")).andReturn("*");
+    responseMock.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+
+    replayDefault();
+    scriptService.download(FILE_PATH);
+    verifyDefault();
+    assertEquals(0, responseContent.size());
+  }
+
+  @Test
+  public void test_download_notModified_ifModifiedSince() throws Exception {
+    expectResource("\"abc\"");
+    expect(requestMock.getHeader("If-None-Match")).andReturn(null);
+    expect(requestMock.getDateHeader("If-Modified-Since")).andReturn(modified.getTime() + 500);
+    responseMock.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+
+    replayDefault();
+    scriptService.download(FILE_PATH);
+    verifyDefault();
+    assertEquals(0, responseContent.size());
+  }
+
+  @Test
+  public void test_download_modified() throws Exception {
+    expectResource("\"abc\"");
+    expect(requestMock.getHeader("If-None-Match")).andReturn(null);
+    expect(requestMock.getDateHeader("If-Modified-Since")).andReturn(modified.getTime() - 1000);
+    expectContentHeaders();
+    expect(requestMock.getHeader("If-Range")).andReturn(null);
+    expect(requestMock.getHeader("Range")).andReturn(null);
+    expectFullContent();
+
+    replayDefault();
+    scriptService.download(FILE_PATH);
+    verifyDefault();
+    assertArrayEquals(CONTENT, responseContent.toByteArray());
+  }
+
+  @Test
+  public void test_download_ifRange_match() throws Exception {
+    expectResource("\"abc\"");
+    expectUnconditional();
+    expectContentHeaders();
+    expect(requestMock.getHeader("If-Range")).andReturn("\"abc\"");
+    expect(requestMock.getHeader("Range")).andReturn("bytes=1-3");
+    responseMock.setHeader("Content-Range", "bytes 1-3/" + CONTENT.length);
+    responseMock.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+    responseMock.setHeader("Content-Length", "3");
+    expect(webDavMock.loadAsStream(path, 1, 3)).andReturn(new ByteArrayInputStream(CONTENT, 1,
+        3));
+
+    replayDefault();
+    scriptService.download(FILE_PATH);
+    verifyDefault();
+    assertEquals("ont", new String(responseContent.toByteArray(), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void test_download_ifRange_mismatch() throws Exception {
+    expectResource("\"abc\"");
+    expectUnconditional();
+    expectContentHeaders();
+    expect(requestMock.getHeader("If-Range")).andReturn("\"other\"");
+    expectFullContent();
+
+    replayDefault();
+    scriptService.download(FILE_PATH);
+    verifyDefault();
+    assertArrayEquals(CONTENT, responseContent.toByteArray());
+  }
+
+  @Test
+  public void test_download_ifRange_weak() throws Exception {
+    expectResource("W/\"abc\"");
+    expectUnconditional();
+    expectContentHeaders();
+    expect(requestMock.getHeader("If-Range")).andReturn("W/\"abc\"");
+    expectFullContent();
+
+    replayDefault();
+    scriptService.download(FILE_PATH);
+    verifyDefault();
+    assertArrayEquals(CONTENT, responseContent.toByteArray());
+  }
+
+  @Test
+  public void test_createOrUpdateAll_windows() throws Exception {
+    AtomicBoolean lastLoaded = new AtomicBoolean(false);
+    Attachment attachment = createMockAndAddToDefault(Attachment.class);
+    expect(attachment.getContent()).andReturn(CONTENT);
+    Attachment failing = createMockAndAddToDefault(Attachment.class);
+    expect(failing.getContent()).andThrow(new XWikiException());
+    expect(failing.getFilename()).andReturn("failing.txt").anyTimes();
+    Attachment last = createMockAndAddToDefault(Attachment.class);
+    expect(last.getContent()).andAnswer(() -> {
+      lastLoaded.set(true);
+      return CONTENT;
+    });
+    expect(webDavMock.getBatchParallelism()).andReturn(2).anyTimes();
+    Capture<Map<Path, ByteSource>> contents = newCapture(CaptureType.ALL);
+    expect(webDavMock.putAll(capture(contents))).andAnswer(() -> {
+      assertFalse("window exceeded", lastLoaded.get());
+      return new DavBatchResult<>();
+    });
+    DavBatchResult<Void> lastResult = new DavBatchResult<>();
+    lastResult.addResult(Paths.get("dir", "last.txt"), null);
+    expect(webDavMock.putAll(capture(contents))).andReturn(lastResult);
+
+    replayDefault();
+    Map<String, Attachment> attachments = new LinkedHashMap<>();
+    attachments.put(FILE_PATH, attachment);
+    attachments.put("dir/failing.txt", failing);
+    attachments.put("dir/last.txt", last);
+    DavBatchResult<Void> result = scriptService.createOrUpdateAll(attachments);
+    verifyDefault();
+    assertEquals(ImmutableSet.of(path), contents.getValues().get(0).keySet());
+    assertArrayEquals(CONTENT, contents.getValues().get(0).get(path).read());
+    assertEquals(ImmutableSet.of(Paths.get("dir", "last.txt")), contents.getValues().get(1)
+        .keySet());
+    assertEquals(ImmutableSet.of(Paths.get("dir", "last.txt")), result.getSucceeded());
+    assertTrue(result.getErrors().get(Paths.get("dir", "failing.txt")) instanceof IOException);
+  }
+
+  private void expectResource(String etag) throws Exception {
+    DavResource resource = createMockAndAddToDefault(DavResource.class);
+    expect(resource.isDirectory()).andReturn(false).anyTimes();
+    expect(resource.getEtag()).andReturn(etag).anyTimes();
+    expect(resource.getModified()).andReturn(modified).anyTimes();
+    expect(resource.getName()).andReturn("file.txt").anyTimes();
+    expect(resource.getContentType()).andReturn("text/plain").anyTimes();
+    expect(resource.getContentLength()).andReturn((long) CONTENT.length).anyTimes();
+    expect(webDavMock.get(path, WebDavService.MINIMAL_PROPS)).andReturn(java.util.Optional.of(
+        resource));
+    if (etag != null) {
+      responseMock.setHeader("ETag", (etag.startsWith("\"") || etag.startsWith("W/")) ? etag
+          : ("\"" + etag + "\""));
+    }
+    responseMock.setDateHeader("Last-Modified", modified.getTime());
+  }
+
+  private void expectUnconditional() {
+    expect(requestMock.getHeader("If-None-Match")).andReturn(null);
+    expect(requestMock.getDateHeader("If-Modified-Since")).andReturn(-1L);
+  }
+
+  private void expectContentHeaders() {
+    responseMock.setCharacterEncoding("");
+    responseMock.setContentType("text/plain");
+    responseMock.addHeader("Content-disposition", "inline; filename=\"file.txt\"");
+    responseMock.setHeader("Accept-Ranges", "bytes");
+  }
+
+  private void expectFullContent() throws Exception {
+    responseMock.setHeader("Content-Length", Integer.toString(CONTENT.length));
+    expect(webDavMock.load(eq(path), anyObject(ServletOutputStream.class))).andAnswer(() -> {
+      ((ServletOutputStream) getCurrentArguments()[1]).write(CONTENT);
+      return (long) CONTENT.length;
+    });
+  }
+
+}
@@ -0,0 +1,41 @@
+package com.celements.webdav.sync;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class DavSyncManifestTest {
+
+  @Test
+  public void test_toBytes_parse() {
+    DavSyncManifest manifest = new DavSyncManifest();
+    manifest.put("a file.txt", new DavSyncManifest.Entry("abc", 42, "\"etag\""));
+    manifest.put("b.txt", new DavSyncManifest.Entry("def", 0, null, "1.1;42;0"));
+    DavSyncManifest parsed = DavSyncManifest.parse(manifest.toBytes());
+    assertEquals(manifest.getNames(), parsed.getNames());
+    assertTrue(parsed.get("a file.txt").matches("abc", 42));
+    assertEquals("\"etag\"", parsed.get("a file.txt").etag);
+    assertTrue(parsed.get("b.txt").matches("def", 0));
+    assertNull(parsed.get("b.txt").etag);
+    assertNull(parsed.get("a file.txt").version);
+    assertEquals("1.1;42;0", parsed.get("b.txt").version);
+  }
+
+  @Test
+  public void test_parse_v1() {
+    DavSyncManifest parsed = DavSyncManifest.parse((DavSyncManifest.HEADER_V1
+        + "\nabc\t42\t\"etag\"\ta file.txt\n").getBytes(StandardCharsets.UTF_8));
+    assertTrue(parsed.get("a file.txt").matches("abc", 42));
+    assertEquals("\"etag\"", parsed.get("a file.txt").etag);
+    assertNull(parsed.get("a file.txt").version);
+  }
+
+  @Test
+  public void test_parse_unknownFormat() {
+    assertTrue(DavSyncManifest.parse("garbage".getBytes(StandardCharsets.UTF_8)).getNames()
+        .isEmpty());
+  }
+
+}
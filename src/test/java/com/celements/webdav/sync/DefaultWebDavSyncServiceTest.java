@@ -0,0 +1,207 @@
+package com.celements.webdav.sync;
+
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.easymock.Capture;
+import org.easymock.CaptureType;
+import org.easymock.EasyMock;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.celements.webdav.DavBatchResult;
+import com.celements.webdav.WebDavService;
+import com.celements.webdav.WebDavService.WebDavConnection;
+import com.github.sardine.DavResource;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteSource;
+
+public class DefaultWebDavSyncServiceTest {
+
+  private final Path dir = Paths.get("sync");
+  private DefaultWebDavSyncService syncService;
+  private WebDavConnection webDav;
+
+  @Before
+  public void prepareTest() throws Exception {
+    syncService = new DefaultWebDavSyncService();
+    webDav = createMock(WebDavConnection.class);
+    expect(webDav.getBatchParallelism()).andReturn(2).anyTimes();
+  }
+
+  @Test
+  public void test_sync_unchanged() throws Exception {
+    ByteSource content = ByteSource.wrap("content".getBytes(StandardCharsets.UTF_8));
+    DavSyncManifest manifest = new DavSyncManifest();
+    manifest.put("a.txt", new DavSyncManifest.Entry(content.hash(Hashing.sha256()).toString(),
+        content.size(), "\"1\""));
+    webDav.createDirectory(dir);
+    expect(webDav.list(dir, WebDavService.MINIMAL_PROPS)).andReturn(Arrays.asList(
+        mockFile(WebDavSyncService.MANIFEST_NAME, "\"m\"", 0), mockFile("a.txt", "\"1\"", 7)));
+    expect(webDav.load(dir.resolve(WebDavSyncService.MANIFEST_NAME))).andReturn(
+        manifest.toBytes());
+    expect(webDav.deleteAll(Collections.emptyList())).andReturn(new DavBatchResult<>());
+
+    replay(webDav);
+    DavSyncReport report = syncService.sync(webDav, Collections.singletonMap("a.txt", content),
+        dir);
+    verify(webDav);
+    assertEquals(Arrays.asList("a.txt"), report.getUnchanged());
+    assertTrue(report.getUploaded().isEmpty());
+    assertEquals(7, report.getBytesSkipped());
+  }
+
+  @Test
+  public void test_sync_changedRemotely() throws Exception {
+    ByteSource content = ByteSource.wrap("content".getBytes(StandardCharsets.UTF_8));
+    DavSyncManifest manifest = new DavSyncManifest();
+    manifest.put("a.txt", new DavSyncManifest.Entry(content.hash(Hashing.sha256()).toString(),
+        content.size(), "\"1\""));
+    webDav.createDirectory(dir);
+    expect(webDav.list(dir, WebDavService.MINIMAL_PROPS)).andReturn(Arrays.asList(
+        mockFile(WebDavSyncService.MANIFEST_NAME, "\"m\"", 0), mockFile("a.txt", "\"2\"", 7)));
+    expect(webDav.load(dir.resolve(WebDavSyncService.MANIFEST_NAME))).andReturn(
+        manifest.toBytes());
+    DavBatchResult<Void> uploadResult = new DavBatchResult<>();
+    uploadResult.addResult(dir.resolve("a.txt"), null);
+    Capture<Map<Path, ByteSource>> uploads = newCapture();
+    expect(webDav.putAll(capture(uploads))).andReturn(uploadResult);
+    expect(webDav.deleteAll(Collections.emptyList())).andReturn(new DavBatchResult<>());
+    expect(webDav.list(dir, WebDavService.MINIMAL_PROPS)).andReturn(Arrays.asList(
+        mockFile(WebDavSyncService.MANIFEST_NAME, "\"m\"", 0), mockFile("a.txt", "\"3\"", 7)));
+    Capture<byte[]> manifestContent = newCapture();
+    webDav.createOrUpdate(eq(dir.resolve(WebDavSyncService.MANIFEST_NAME)), capture(
+        manifestContent));
+
+    replay(webDav);
+    DavSyncReport report = syncService.sync(webDav, Collections.singletonMap("a.txt", content),
+        dir);
+    verify(webDav);
+    assertTrue(report.getUnchanged().isEmpty());
+    assertEquals(Arrays.asList("a.txt"), report.getUploaded());
+    assertEquals(7, report.getBytesUploaded());
+    assertTrue(content.contentEquals(uploads.getValue().get(dir.resolve("a.txt"))));
+    DavSyncManifest.Entry entry = DavSyncManifest.parse(manifestContent.getValue()).get("a.txt");
+    assertEquals("\"3\"", entry.etag);
+    assertTrue(entry.matches(content.hash(Hashing.sha256()).toString(), 7));
+  }
+
+  @Test
+  public void test_sync_uploadFailed() throws Exception {
+    ByteSource content = ByteSource.wrap("content".getBytes(StandardCharsets.UTF_8));
+    webDav.createDirectory(dir);
+    expect(webDav.list(dir, WebDavService.MINIMAL_PROPS)).andReturn(Collections.emptyList());
+    DavBatchResult<Void> uploadResult = new DavBatchResult<>();
+    IOException exc = new IOException();
+    uploadResult.addError(dir.resolve("a.txt"), exc);
+    expect(webDav.putAll(EasyMock.<Map<Path, ByteSource>>anyObject())).andReturn(uploadResult);
+    expect(webDav.deleteAll(Collections.emptyList())).andReturn(new DavBatchResult<>());
+    Capture<byte[]> manifestContent = newCapture();
+    webDav.createOrUpdate(eq(dir.resolve(WebDavSyncService.MANIFEST_NAME)), capture(
+        manifestContent));
+
+    replay(webDav);
+    DavSyncReport report = syncService.sync(webDav, Collections.singletonMap("a.txt", content),
+        dir);
+    verify(webDav);
+    assertTrue(report.getUploaded().isEmpty());
+    assertSame(exc, report.getErrors().get("a.txt"));
+    assertNull(DavSyncManifest.parse(manifestContent.getValue()).get("a.txt"));
+  }
+
+  @Test
+  public void test_sync_versionUnchanged() throws Exception {
+    ByteSource content = new ByteSource() {
+
+      @Override
+      public InputStream openStream() throws IOException {
+        throw new AssertionError("content read");
+      }
+    };
+    DavSyncManifest manifest = new DavSyncManifest();
+    manifest.put("a.txt", new DavSyncManifest.Entry("abc", 7, "\"1\"", "v1"));
+    webDav.createDirectory(dir);
+    expect(webDav.list(dir, WebDavService.MINIMAL_PROPS)).andReturn(Arrays.asList(
+        mockFile(WebDavSyncService.MANIFEST_NAME, "\"m\"", 0), mockFile("a.txt", "\"1\"", 7)));
+    expect(webDav.load(dir.resolve(WebDavSyncService.MANIFEST_NAME))).andReturn(
+        manifest.toBytes());
+    expect(webDav.deleteAll(Collections.emptyList())).andReturn(new DavBatchResult<>());
+
+    replay(webDav);
+    DavSyncReport report = syncService.sync(webDav, Collections.singletonMap("a.txt", content),
+        Collections.singletonMap("a.txt", "v1"), dir);
+    verify(webDav);
+    assertEquals(Arrays.asList("a.txt"), report.getUnchanged());
+    assertEquals(7, report.getBytesSkipped());
+  }
+
+  @Test
+  public void test_sync_versionChanged_contentUnchanged() throws Exception {
+    ByteSource content = ByteSource.wrap("content".getBytes(StandardCharsets.UTF_8));
+    DavSyncManifest manifest = new DavSyncManifest();
+    manifest.put("a.txt", new DavSyncManifest.Entry(content.hash(Hashing.sha256()).toString(),
+        content.size(), "\"1\"", "v1"));
+    webDav.createDirectory(dir);
+    expect(webDav.list(dir, WebDavService.MINIMAL_PROPS)).andReturn(Arrays.asList(
+        mockFile(WebDavSyncService.MANIFEST_NAME, "\"m\"", 0), mockFile("a.txt", "\"1\"", 7)));
+    expect(webDav.load(dir.resolve(WebDavSyncService.MANIFEST_NAME))).andReturn(
+        manifest.toBytes());
+    expect(webDav.deleteAll(Collections.emptyList())).andReturn(new DavBatchResult<>());
+    Capture<byte[]> manifestContent = newCapture();
+    webDav.createOrUpdate(eq(dir.resolve(WebDavSyncService.MANIFEST_NAME)), capture(
+        manifestContent));
+
+    replay(webDav);
+    DavSyncReport report = syncService.sync(webDav, Collections.singletonMap("a.txt", content),
+        Collections.singletonMap("a.txt", "v2"), dir);
+    verify(webDav);
+    assertEquals(Arrays.asList("a.txt"), report.getUnchanged());
+    assertEquals("v2", DavSyncManifest.parse(manifestContent.getValue()).get("a.txt").version);
+  }
+
+  @Test
+  public void test_sync_uploadsInWindows() throws Exception {
+    Map<String, ByteSource> files = new LinkedHashMap<>();
+    for (String name : Arrays.asList("a.txt", "b.txt", "c.txt")) {
+      files.put(name, ByteSource.wrap(name.getBytes(StandardCharsets.UTF_8)));
+    }
+    webDav.createDirectory(dir);
+    expect(webDav.list(dir, WebDavService.MINIMAL_PROPS)).andReturn(Collections.emptyList());
+    Capture<Map<Path, ByteSource>> uploads = newCapture(CaptureType.ALL);
+    expect(webDav.putAll(capture(uploads))).andReturn(new DavBatchResult<>()).times(2);
+    expect(webDav.deleteAll(Collections.emptyList())).andReturn(new DavBatchResult<>());
+    webDav.createOrUpdate(eq(dir.resolve(WebDavSyncService.MANIFEST_NAME)),
+        EasyMock.<byte[]>anyObject());
+
+    replay(webDav);
+    syncService.sync(webDav, files, dir);
+    verify(webDav);
+    assertEquals(2, uploads.getValues().size());
+    assertEquals(Arrays.asList(dir.resolve("a.txt"), dir.resolve("b.txt")), new ArrayList<>(
+        uploads.getValues().get(0).keySet()));
+    assertEquals(Arrays.asList(dir.resolve("c.txt")), new ArrayList<>(uploads.getValues().get(1)
+        .keySet()));
+  }
+
+  private DavResource mockFile(String name, String etag, long size) {
+    DavResource resource = createMock(DavResource.class);
+    expect(resource.isDirectory()).andReturn(false).anyTimes();
+    expect(resource.getName()).andReturn(name).anyTimes();
+    expect(resource.getEtag()).andReturn(etag).anyTimes();
+    expect(resource.getContentLength()).andReturn(size).anyTimes();
+    replay(resource);
+    return resource;
+  }
+
+}